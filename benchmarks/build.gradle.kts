@@ -65,3 +65,13 @@ tasks.register<JavaExec>("jmhLargeProfile") {
     args = listOf("-f", "1", "-wi", "2", "-i", "3", "-prof", "stack:lines=10;detailLine=true", "LargeRecord.*decode")
 }
 
+tasks.register<JavaExec>("jmhEncode") {
+    group = "benchmark"
+    description = "Run JMH encode benchmarks for the generated codecs."
+    mainClass = "org.openjdk.jmh.Main"
+    classpath = sourceSets.main.get().runtimeClasspath
+    javaLauncher = javaToolchains.launcherFor {
+        languageVersion = JavaLanguageVersion.of(24)
+    }
+    args = listOf("-f", "1", "-wi", "3", "-i", "5", "encodeWithGenerated")
+}
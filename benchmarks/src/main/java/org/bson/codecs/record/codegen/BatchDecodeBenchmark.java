@@ -0,0 +1,95 @@
+package org.bson.codecs.record.codegen;
+
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.record.records.LargeRecord;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class BatchDecodeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"100000"})
+        private int documentCount;
+
+        // the parallelism of the pool for the parallel benchmark, or 0 for the number of available processors
+        @Param({"1", "4", "0"})
+        private int parallelism;
+
+        private GeneratedRecordCodec<LargeRecord> generatedCodec;
+        private ForkJoinPool pool;
+        private byte[] batchBytes;
+
+        @Setup
+        public void setup() {
+            generatedCodec = (GeneratedRecordCodec<LargeRecord>) CodecRegistries.fromProviders(
+                    DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider())
+                    .get(LargeRecord.class);
+            pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            for (int i = 0; i < documentCount; i++) {
+                generatedCodec.encodeTo(buffer, new LargeRecord(
+                        "John" + i,
+                        "Doe",
+                        "john.doe" + i + "@example.com",
+                        "+1-555-123-4567",
+                        "123 Main Street",
+                        "Springfield",
+                        "Illinois",
+                        "62701",
+                        "US",
+                        i,
+                        200002,
+                        300003,
+                        1709500000000L + i,
+                        1709510000000L,
+                        1709520000000L,
+                        true,
+                        i % 2 == 0,
+                        false,
+                        1234.56 + i));
+            }
+            batchBytes = buffer.toByteArray();
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void decodeAllWithGenerated(Input input, Blackhole blackhole) {
+        blackhole.consume(input.generatedCodec.decodeAll(ByteBuffer.wrap(input.batchBytes)));
+    }
+
+    @Benchmark
+    public void decodeAllInParallelWithGenerated(Input input, Blackhole blackhole) {
+        blackhole.consume(ParallelBatchDecoder.decodeAll(input.generatedCodec, ByteBuffer.wrap(input.batchBytes),
+                LargeRecord[]::new, input.pool));
+    }
+}
@@ -0,0 +1,127 @@
+package org.bson.codecs.record.codegen;
+
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.record.records.LargeRecord;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+
+/**
+ * Measures reading and writing {@code .bson} files of records.  Besides the number of files per second, the
+ * {@code megabytes} counter reports the throughput in MB/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class BsonFileBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"100000"})
+        private int documentCount;
+
+        private GeneratedRecordCodec<LargeRecord> generatedCodec;
+        private LargeRecord[] records;
+        private Path readPath;
+        private Path writePath;
+        private long fileSize;
+
+        @Setup
+        public void setup() throws IOException {
+            generatedCodec = (GeneratedRecordCodec<LargeRecord>) CodecRegistries.fromProviders(
+                    DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider())
+                    .get(LargeRecord.class);
+
+            records = new LargeRecord[documentCount];
+            for (int i = 0; i < documentCount; i++) {
+                records[i] = new LargeRecord(
+                        "John" + i,
+                        "Doe",
+                        "john.doe" + i + "@example.com",
+                        "+1-555-123-4567",
+                        "123 Main Street",
+                        "Springfield",
+                        "Illinois",
+                        "62701",
+                        "US",
+                        i,
+                        200002,
+                        300003,
+                        1709500000000L + i,
+                        1709510000000L,
+                        1709520000000L,
+                        true,
+                        i % 2 == 0,
+                        false,
+                        1234.56 + i);
+            }
+
+            readPath = Files.createTempFile("records", ".bson");
+            writePath = Files.createTempFile("records", ".bson");
+            try (var writer = BsonFileWriter.create(readPath, generatedCodec)) {
+                for (var record : records) {
+                    writer.write(record);
+                }
+            }
+            fileSize = Files.size(readPath);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(readPath);
+            Files.deleteIfExists(writePath);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void readWithGenerated(Input input, Bytes bytes, Blackhole blackhole) throws IOException {
+        try (var reader = BsonFileReader.open(input.readPath, input.generatedCodec)) {
+            while (reader.hasNext()) {
+                blackhole.consume(reader.next());
+            }
+        }
+        bytes.megabytes += input.fileSize / 1_000_000.0;
+    }
+
+    @Benchmark
+    public void writeWithGenerated(Input input, Bytes bytes) throws IOException {
+        try (var writer = BsonFileWriter.create(input.writePath, input.generatedCodec)) {
+            for (var record : input.records) {
+                writer.write(record);
+            }
+        }
+        bytes.megabytes += input.fileSize / 1_000_000.0;
+    }
+}
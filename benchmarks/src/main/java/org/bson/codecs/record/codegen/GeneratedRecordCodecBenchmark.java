@@ -43,17 +43,19 @@ public class GeneratedRecordCodecBenchmark {
         private SimpleRecordWithPrimitives simpleRecord;
         private Document simpleDocument;
         private BsonDocument simpleBsonDocument;
-        private Codec<SimpleRecordWithPrimitives> generatedRecordCodec;
+        private GeneratedRecordCodec<SimpleRecordWithPrimitives> generatedRecordCodec;
         private Codec<SimpleRecordWithPrimitives> reflectiveRecordCodec;
         private Codec<Document> documentCodec;
         private Codec<BsonDocument> bsonDocumentCodec;
         private byte[] documentBytes;
+        private int encodedSize;
         private BsonBinaryReader reader;
         private BsonBinaryWriter writer;
+        private BasicOutputBuffer outputBuffer;
 
         @Setup
         public void setup() {
-            generatedRecordCodec = CodecRegistries.fromProviders(
+            generatedRecordCodec = (GeneratedRecordCodec<SimpleRecordWithPrimitives>) CodecRegistries.fromProviders(
                     DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider())
                     .get(SimpleRecordWithPrimitives.class);
 
@@ -72,11 +74,13 @@ public class GeneratedRecordCodecBenchmark {
             BasicOutputBuffer buffer = new BasicOutputBuffer();
             reflectiveRecordCodec.encode(new BsonBinaryWriter(buffer), simpleRecord, EncoderContext.builder().build());
             documentBytes = buffer.toByteArray();
+            encodedSize = generatedRecordCodec.sizeOf(simpleRecord);
         }
 
         @Setup(Level.Invocation)
         public void beforeIteration() {
-            writer = new BsonBinaryWriter(new BasicOutputBuffer(256));
+            writer = new BsonBinaryWriter(new BasicOutputBuffer(encodedSize));
+            outputBuffer = new BasicOutputBuffer(encodedSize);
             reader = new BsonBinaryReader(ByteBuffer.wrap(documentBytes));
         }
     }
@@ -87,6 +91,12 @@ public class GeneratedRecordCodecBenchmark {
         blackhole.consume(input);
     }
 
+    @Benchmark
+    public void encodeToWithGenerated(Input input, Blackhole blackhole) {
+        input.generatedRecordCodec.encodeTo(input.outputBuffer, input.simpleRecord);
+        blackhole.consume(input);
+    }
+
     @Benchmark
     public void decodeWithGenerated(Input input, Blackhole blackhole) {
         blackhole.consume(input.generatedRecordCodec.decode(input.reader, DecoderContext.builder().build()));
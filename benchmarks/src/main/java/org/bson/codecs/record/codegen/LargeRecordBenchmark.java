@@ -23,6 +23,7 @@ import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
 import java.nio.ByteBuffer;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
@@ -37,17 +38,21 @@ public class LargeRecordBenchmark {
     @State(Scope.Benchmark)
     public static class Input {
         private LargeRecord record;
-        private Codec<LargeRecord> generatedCodec;
+        private GeneratedRecordCodec<LargeRecord> generatedCodec;
+        private GeneratedRecordCodec<LargeRecord> projectionCodec;
         private Codec<LargeRecord> reflectiveCodec;
         private byte[] documentBytes;
+        private int encodedSize;
         private BsonBinaryReader reader;
         private BsonBinaryWriter writer;
+        private BasicOutputBuffer outputBuffer;
 
         @Setup
         public void setup() {
-            generatedCodec = CodecRegistries.fromProviders(
-                    DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider())
-                    .get(LargeRecord.class);
+            var provider = new GeneratedRecordCodecProvider();
+            var registry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+            generatedCodec = (GeneratedRecordCodec<LargeRecord>) registry.get(LargeRecord.class);
+            projectionCodec = provider.getProjection(LargeRecord.class, Set.of("emailAddress", "customerId", "isActive"), registry);
 
             reflectiveCodec = CodecRegistries.fromProviders(
                     DEFAULT_CODEC_REGISTRY, new RecordCodecProvider())
@@ -78,26 +83,44 @@ public class LargeRecordBenchmark {
             BasicOutputBuffer buffer = new BasicOutputBuffer();
             reflectiveCodec.encode(new BsonBinaryWriter(buffer), record, EncoderContext.builder().build());
             documentBytes = buffer.toByteArray();
+            encodedSize = generatedCodec.sizeOf(record);
         }
 
         @Setup(Level.Invocation)
         public void beforeIteration() {
-            writer = new BsonBinaryWriter(new BasicOutputBuffer(512));
+            writer = new BsonBinaryWriter(new BasicOutputBuffer(encodedSize));
+            outputBuffer = new BasicOutputBuffer(encodedSize);
             reader = new BsonBinaryReader(ByteBuffer.wrap(documentBytes));
         }
     }
 
+    @Benchmark
+    public void sizeOfWithGenerated(Input input, Blackhole blackhole) {
+        blackhole.consume(input.generatedCodec.sizeOf(input.record));
+    }
+
     @Benchmark
     public void encodeWithGenerated(Input input, Blackhole blackhole) {
         input.generatedCodec.encode(input.writer, input.record, EncoderContext.builder().build());
         blackhole.consume(input);
     }
 
+    @Benchmark
+    public void encodeToWithGenerated(Input input, Blackhole blackhole) {
+        input.generatedCodec.encodeTo(input.outputBuffer, input.record);
+        blackhole.consume(input);
+    }
+
     @Benchmark
     public void decodeWithGenerated(Input input, Blackhole blackhole) {
         blackhole.consume(input.generatedCodec.decode(input.reader, DecoderContext.builder().build()));
     }
 
+    @Benchmark
+    public void decodeProjectionWithGenerated(Input input, Blackhole blackhole) {
+        blackhole.consume(input.projectionCodec.decode(input.reader, DecoderContext.builder().build()));
+    }
+
     @Benchmark
     public void encodeWithReflective(Input input, Blackhole blackhole) {
         input.reflectiveCodec.encode(input.writer, input.record, EncoderContext.builder().build());
@@ -0,0 +1,28 @@
+plugins {
+    `java-gradle-plugin`
+}
+
+repositories {
+    mavenCentral()
+}
+
+gradlePlugin {
+    plugins {
+        create("bsonRecordCodegen") {
+            id = "org.mongodb.bson-record-codegen"
+            implementationClass = "org.bson.codecs.record.codegen.gradle.BsonRecordCodegenPlugin"
+        }
+    }
+}
+
+// The plugin runs in the Gradle daemon, which may use an older JVM than the projects it builds.  The codecs themselves
+// are generated in a forked JVM using the project's toolchain.
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(24)
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.release = 17
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.jvm.toolchain.JavaToolchainService;
+
+import java.util.Map;
+
+/**
+ * Generates codecs for records at build time, so that {@code GeneratedRecordCodecProvider} does not have to generate them
+ * when the application starts.
+ *
+ * <p>After the main source set is compiled, the {@code generateRecordCodecs} task generates codec classes for the records
+ * annotated with {@code @GenerateRecordCodec} (as listed by the annotation processor) and for those configured in the
+ * {@code bsonRecordCodegen} extension.  Its output is added to the main source set output, and so is packaged with the
+ * records.</p>
+ */
+public class BsonRecordCodegenPlugin implements Plugin<Project> {
+    static final String EXTENSION_NAME = "bsonRecordCodegen";
+    static final String TASK_NAME = "generateRecordCodecs";
+
+    @Override
+    public void apply(final Project project) {
+        var extension = project.getExtensions().create(EXTENSION_NAME, BsonRecordCodegenExtension.class);
+
+        project.getPlugins().withType(JavaPlugin.class, javaPlugin -> {
+            var java = project.getExtensions().getByType(JavaPluginExtension.class);
+            var toolchains = project.getExtensions().getByType(JavaToolchainService.class);
+            var main = project.getExtensions().getByType(SourceSetContainer.class).getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+            var task = project.getTasks().register(TASK_NAME, GenerateRecordCodecsTask.class, generate -> {
+                generate.setGroup("build");
+                generate.setDescription("Generates BSON codecs for records at build time.");
+                generate.getClassesDirs().from(main.getOutput().getClassesDirs());
+                generate.getClasspath().from(main.getOutput().getClassesDirs(),
+                        project.getConfigurations().getByName(main.getRuntimeClasspathConfigurationName()));
+                generate.getRecords().set(extension.getRecords());
+                generate.getJavaLauncher().convention(toolchains.launcherFor(java.getToolchain()));
+                generate.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("generated/bsonRecordCodecs/main"));
+            });
+
+            main.getOutput().dir(Map.<String, Object>of("builtBy", task), task.flatMap(GenerateRecordCodecsTask::getOutputDirectory));
+        });
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.ExecOperations;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Runs {@code org.bson.codecs.record.codegen.RecordCodecCompiler} in a forked JVM over the compiled classes.
+ */
+@CacheableTask
+public abstract class GenerateRecordCodecsTask extends DefaultTask {
+    static final String COMPILER_MAIN_CLASS = "org.bson.codecs.record.codegen.RecordCodecCompiler";
+
+    // Must match PrecompiledCodecs.RECORDS_RESOURCE in the library
+    static final String RECORDS_RESOURCE = "META-INF/bson-record-codegen/records";
+
+    /**
+     * The directories with the compiled records, and the records resource written by the annotation processor.  They are
+     * also part of {@link #getClasspath()}, which tracks them as inputs.
+     *
+     * @return the classes directories
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getClassesDirs();
+
+    /**
+     * The class path to load the records, their component types and the codec generator from.
+     *
+     * @return the class path
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The binary names of records to generate codecs for, in addition to the annotated ones.
+     *
+     * @return the record class names
+     */
+    @Input
+    public abstract ListProperty<String> getRecords();
+
+    /**
+     * The JVM to generate codecs with, which must support the Class-File API.
+     *
+     * @return the Java launcher
+     */
+    @Nested
+    public abstract Property<JavaLauncher> getJavaLauncher();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @TaskAction
+    public void generate() {
+        var outputDirectory = getOutputDirectory().get().getAsFile();
+        getFileSystemOperations().delete(spec -> spec.delete(outputDirectory));
+
+        var args = new ArrayList<String>();
+        args.add("--output");
+        args.add(outputDirectory.getAbsolutePath());
+        for (var classesDir : getClassesDirs()) {
+            var recordsFile = new File(classesDir, RECORDS_RESOURCE);
+            if (recordsFile.isFile()) {
+                args.add("--records-file");
+                args.add(recordsFile.getAbsolutePath());
+            }
+        }
+        args.addAll(getRecords().get());
+
+        getExecOperations().javaexec(spec -> {
+            spec.setExecutable(getJavaLauncher().get().getExecutablePath().getAsFile());
+            spec.classpath(getClasspath());
+            spec.getMainClass().set(COMPILER_MAIN_CLASS);
+            spec.args(args);
+        });
+    }
+}
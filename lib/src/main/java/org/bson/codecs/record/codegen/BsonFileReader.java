@@ -0,0 +1,130 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonSerializationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.lang.String.format;
+
+/**
+ * Reads the records of a file of BSON documents that follow each other, such as the {@code .bson} files written by
+ * {@code mongodump}.
+ *
+ * <p>The file is mapped into memory rather than read, and each document is decoded with
+ * {@link GeneratedRecordCodec#decode(java.nio.ByteBuffer)} from a view of its bytes in the mapping, so the contents of the
+ * file are never copied to the heap.  Files larger than 2GB are supported.</p>
+ *
+ * <p>A reader is meant to be used by a single thread: the mapping is only accessible from the thread that opened the
+ * reader, and it is released when the reader is closed.</p>
+ *
+ * @param <T> the record type
+ * @see BsonFileWriter
+ */
+public final class BsonFileReader<T> implements Iterator<T>, Closeable {
+
+    private static final ValueLayout.OfInt DOCUMENT_LENGTH = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final GeneratedRecordCodec<T> codec;
+    private final Arena arena;
+    private final MemorySegment segment;
+    private long position;
+
+    /**
+     * Opens a file of BSON documents for reading.
+     *
+     * @param path the path of the file
+     * @param codec the codec of the records
+     * @param <T> the record type
+     * @return the reader, positioned at the first document
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public static <T> BsonFileReader<T> open(final Path path, final GeneratedRecordCodec<T> codec) throws IOException {
+        var arena = Arena.ofConfined();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new BsonFileReader<>(codec, arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private BsonFileReader(final GeneratedRecordCodec<T> codec, final Arena arena, final MemorySegment segment) {
+        this.codec = codec;
+        this.arena = arena;
+        this.segment = segment;
+    }
+
+    /**
+     * Gets the position of the next document in the file.
+     *
+     * @return the position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < segment.byteSize();
+    }
+
+    /**
+     * Decodes the next document of the file.
+     *
+     * @return the decoded record
+     * @throws NoSuchElementException if there are no more documents
+     * @throws BsonSerializationException if the length of the document is invalid or exceeds the file
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var remaining = segment.byteSize() - position;
+        if (remaining < 4) {
+            throw new BsonSerializationException(format(
+                    "Expected the length of a document at position %d, but only %d bytes remain", position, remaining));
+        }
+        var length = segment.get(DOCUMENT_LENGTH, position);
+        if (length < 5 || length > remaining) {
+            throw new BsonSerializationException(format("Invalid length %d of the document at position %d", length, position));
+        }
+        var record = codec.decode(segment.asSlice(position, length).asByteBuffer());
+        position += length;
+        return record;
+    }
+
+    /**
+     * Releases the mapping of the file.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
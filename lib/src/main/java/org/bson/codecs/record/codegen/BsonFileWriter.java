@@ -0,0 +1,260 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.ByteBuf;
+import org.bson.ByteBufNIO;
+import org.bson.io.OutputBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes records to a file as BSON documents that follow each other, such as the {@code .bson} files read by
+ * {@code mongorestore}.
+ *
+ * <p>Records are encoded with {@link GeneratedRecordCodec#encodeTo(OutputBuffer, Object)} straight into a large direct
+ * buffer, which is written to the file whenever the next document doesn't fit in it.  Only whole documents are written, so
+ * the buffer grows if a single document is larger than it.</p>
+ *
+ * <p>A writer is not thread-safe.</p>
+ *
+ * @param <T> the record type
+ * @see BsonFileReader
+ */
+public final class BsonFileWriter<T> implements Closeable {
+
+    /**
+     * The default size of the buffer that records are encoded into.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final GeneratedRecordCodec<T> codec;
+    private final FileChannel channel;
+    private final ChannelOutputBuffer outputBuffer;
+
+    /**
+     * Creates a file of BSON documents, or truncates it if it exists.
+     *
+     * @param path the path of the file
+     * @param codec the codec of the records
+     * @param <T> the record type
+     * @return the writer
+     * @throws IOException if the file can't be opened
+     */
+    public static <T> BsonFileWriter<T> create(final Path path, final GeneratedRecordCodec<T> codec) throws IOException {
+        return new BsonFileWriter<>(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), codec, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a file of BSON documents for appending records to it, or creates it if it doesn't exist.
+     *
+     * @param path the path of the file
+     * @param codec the codec of the records
+     * @param <T> the record type
+     * @return the writer
+     * @throws IOException if the file can't be opened
+     */
+    public static <T> BsonFileWriter<T> append(final Path path, final GeneratedRecordCodec<T> codec) throws IOException {
+        return new BsonFileWriter<>(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND), codec, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a writer that writes records to the channel at its current position.
+     *
+     * @param channel the channel, which is closed when the writer is closed
+     * @param codec the codec of the records
+     * @param bufferSize the initial size of the buffer that records are encoded into
+     */
+    public BsonFileWriter(final FileChannel channel, final GeneratedRecordCodec<T> codec, final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.codec = codec;
+        this.channel = channel;
+        this.outputBuffer = new ChannelOutputBuffer(channel, bufferSize);
+    }
+
+    /**
+     * Encodes a record as the next document of the file.
+     *
+     * <p>If the record can't be encoded, the partially encoded document is discarded.</p>
+     *
+     * @param record the record
+     * @throws IOException if the buffer has to be written to the file and it fails
+     */
+    public void write(final T record) throws IOException {
+        outputBuffer.startDocument();
+        try {
+            codec.encodeTo(outputBuffer, record);
+        } catch (UncheckedIOException e) {
+            outputBuffer.truncateToPosition(0);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            outputBuffer.truncateToPosition(0);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the documents in the buffer to the file.
+     *
+     * @throws IOException if writing to the file fails
+     */
+    public void flush() throws IOException {
+        outputBuffer.startDocument();
+        outputBuffer.flush();
+    }
+
+    /**
+     * Writes the documents in the buffer to the file, and closes it.
+     *
+     * @throws IOException if writing to or closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+
+    /**
+     * An output buffer over a direct byte buffer, which writes the documents before the current one to the channel when
+     * the byte buffer is full.  Positions are relative to the start of the current document, so they are not affected by
+     * moving it to the start of the byte buffer, and the lengths of the document and its embedded documents can still be
+     * written at the positions they were reserved at.
+     */
+    private static final class ChannelOutputBuffer extends OutputBuffer {
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+        private int documentStart;
+
+        ChannelOutputBuffer(final FileChannel channel, final int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void startDocument() {
+            documentStart = buffer.position();
+        }
+
+        /**
+         * Writes the bytes before the current document to the channel, and moves the current document to the start of the
+         * byte buffer.
+         */
+        void flush() throws IOException {
+            var position = buffer.position();
+            buffer.position(0).limit(documentStart);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.limit(position).position(documentStart).compact();
+            documentStart = 0;
+        }
+
+        private void ensureRemaining(final int size) {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (buffer.remaining() < size) {
+                var newBuffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + size))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer = newBuffer.put(buffer.flip());
+            }
+        }
+
+        @Override
+        public void writeBytes(final byte[] bytes, final int offset, final int length) {
+            ensureRemaining(length);
+            buffer.put(bytes, offset, length);
+        }
+
+        @Override
+        public void writeByte(final int value) {
+            ensureRemaining(1);
+            buffer.put((byte) value);
+        }
+
+        @Override
+        public void writeInt32(final int value) {
+            ensureRemaining(4);
+            buffer.putInt(value);
+        }
+
+        @Override
+        public void writeInt64(final long value) {
+            ensureRemaining(8);
+            buffer.putLong(value);
+        }
+
+        @Override
+        protected void write(final int position, final int value) {
+            buffer.put(documentStart + position, (byte) value);
+        }
+
+        @Override
+        public void writeInt32(final int position, final int value) {
+            buffer.putInt(documentStart + position, value);
+        }
+
+        @Override
+        public int getPosition() {
+            return buffer.position() - documentStart;
+        }
+
+        @Override
+        public int getSize() {
+            return getPosition();
+        }
+
+        @Override
+        public void truncateToPosition(final int newPosition) {
+            if (newPosition > getPosition() || newPosition < 0) {
+                throw new IllegalArgumentException();
+            }
+            buffer.position(documentStart + newPosition);
+        }
+
+        @Override
+        public List<ByteBuf> getByteBuffers() {
+            return List.of(new ByteBufNIO(buffer.slice(documentStart, getPosition()).order(ByteOrder.LITTLE_ENDIAN)));
+        }
+
+        @Override
+        public int pipe(final OutputStream out) throws IOException {
+            var bytes = new byte[getPosition()];
+            buffer.get(documentStart, bytes);
+            out.write(bytes);
+            return bytes.length;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An opt-in cache of generated codec classes on disk, which lets later runs of an application load the bytes of its codec
+ * classes rather than generate them again.  It is enabled by setting the {@value #DIRECTORY_PROPERTY} system property to a
+ * directory, which is created if needed.
+ *
+ * <p>Classes from the cache are defined as nestmates of their records, so the directory must only be writable by the user
+ * that runs the application: it must be owned by that user, and on POSIX file systems, have no permissions for group or
+ * others, as a directory that the cache creates does.  Otherwise, the cache is not used.  This is checked once, when the
+ * cache first finds the directory.  Each class is also stored with a
+ * SHA-256 digest of its key and bytes, which is checked when it is loaded, so that a class that was corrupted or stored
+ * under another key is generated again.</p>
+ *
+ * <p>The bytes of a codec class only depend on the shape of its record: the names, types and annotations of its
+ * components, its type arguments, and the components a projection decodes.  Each class is stored under a key made of the
+ * record's name and a hash of that shape and of this library's version, so a record that changes, or an upgrade of this
+ * library, just misses the cache.  Classes loaded from the cache are still defined as hidden classes, as generated ones
+ * are.</p>
+ *
+ * <p>The JDK's AOT cache (JEP 483) only archives classes loaded from the class path, not classes defined at runtime, so
+ * codecs that should be part of it need to be generated at build time by {@link RecordCodecCompiler}.  This cache covers
+ * the others, e.g. codecs of generic records and projections, and works the same with or without an AOT cache.</p>
+ */
+final class CodecClassCache {
+
+    /**
+     * The system property that enables the cache, set to the directory of the cache.
+     */
+    static final String DIRECTORY_PROPERTY = "org.bson.codecs.record.codegen.cacheDirectory";
+
+    private static final CodecClassCache DEFAULT = System.getProperty(DIRECTORY_PROPERTY) != null
+            ? new CodecClassCache(Path.of(System.getProperty(DIRECTORY_PROPERTY)))
+            : null;
+
+    // The generator's own bytecode stands in for the version of this library, so that development builds never share
+    // cached classes either
+    private static final List<String> GENERATOR_CLASS_RESOURCES = List.of(
+            "GeneratedRecordCodecProvider.class",
+            "GeneratedRecordCodecProvider$RecordCodecGenerator.class",
+            "GeneratedRecordCodecProvider$RecordCodecGenerator$ComponentModel.class");
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(PosixFilePermission.OWNER_READ,
+            PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+
+    private static final int DIGEST_LENGTH = 32;
+
+    private static volatile String libraryVersion;
+
+    private final Path directory;
+
+    // Whether the directory is private, once it has been checked
+    private volatile Boolean privateDirectory;
+
+    /**
+     * Gets the cache configured with the {@value #DIRECTORY_PROPERTY} system property.
+     *
+     * @return the cache, or null if it is not enabled
+     */
+    static CodecClassCache getDefault() {
+        return DEFAULT;
+    }
+
+    CodecClassCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the key of a codec class.
+     *
+     * @param recordClass the record class
+     * @param shape a description of everything the bytes of the codec class depend on, besides this library
+     * @return the key
+     */
+    static String getKey(final Class<?> recordClass, final String shape) {
+        return recordClass.getName() + "-" + hash((getLibraryVersion() + "\n" + shape).getBytes(UTF_8));
+    }
+
+    /**
+     * Loads the bytes of a codec class from the cache, if its digest matches them.
+     *
+     * @param key the key of the codec class
+     * @return the bytes, or null if the class is not in the cache, can't be read, or does not match its digest
+     */
+    byte[] load(final String key) {
+        if (!isPrivateDirectory()) {
+            return null;
+        }
+        byte[] entry;
+        try {
+            entry = Files.readAllBytes(getPath(key));
+        } catch (IOException e) {
+            // usually a NoSuchFileException, for a class that was never cached
+            return null;
+        }
+        if (entry.length < DIGEST_LENGTH) {
+            return null;
+        }
+        var bytes = Arrays.copyOfRange(entry, DIGEST_LENGTH, entry.length);
+        return MessageDigest.isEqual(Arrays.copyOf(entry, DIGEST_LENGTH), digest(key, bytes)) ? bytes : null;
+    }
+
+    /**
+     * Stores the bytes of a codec class in the cache, after their digest.  Classes are written to a temporary file that is then
+     * moved into place, so other processes never see a partially written class.  Failures are ignored, as the class can
+     * always be generated again.
+     *
+     * @param key the key of the codec class
+     * @param bytes the bytes
+     */
+    void store(final String key, final byte[] bytes) {
+        try {
+            if (privateDirectory == null && Files.notExists(directory)) {
+                if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                    Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectories(directory);
+                }
+            }
+            if (!isPrivateDirectory()) {
+                return;
+            }
+            var temporaryFile = Files.createTempFile(directory, key, ".tmp");
+            try {
+                var entry = Arrays.copyOf(digest(key, bytes), DIGEST_LENGTH + bytes.length);
+                System.arraycopy(bytes, 0, entry, DIGEST_LENGTH, bytes.length);
+                Files.write(temporaryFile, entry);
+                Files.move(temporaryFile, getPath(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            // the cache is best effort
+        }
+    }
+
+    /**
+     * Removes a codec class from the cache, e.g. because its bytes could not be defined.
+     *
+     * @param key the key of the codec class
+     */
+    void remove(final String key) {
+        try {
+            Files.deleteIfExists(getPath(key));
+        } catch (IOException e) {
+            // the cache is best effort
+        }
+    }
+
+    Path getPath(final String key) {
+        return directory.resolve(key + ".class");
+    }
+
+    // Whether the directory is owned by the current user, and on POSIX file systems, only accessible to them
+    private boolean isPrivateDirectory() {
+        var result = privateDirectory;
+        if (result == null) {
+            try {
+                result = checkPrivateDirectory();
+            } catch (NoSuchFileException e) {
+                // the directory is checked once it has been created
+                return false;
+            } catch (IOException e) {
+                result = false;
+            }
+            privateDirectory = result;
+        }
+        return result;
+    }
+
+    private boolean checkPrivateDirectory() throws IOException {
+        var posixView = Files.getFileAttributeView(directory, PosixFileAttributeView.class);
+        if (posixView != null && !posixView.readAttributes().permissions().equals(OWNER_ONLY)) {
+            return false;
+        }
+        // The current user is the owner of a file that this process creates.  Looking the user up by name instead fails
+        // when they have no name, e.g. in a container running as a user id without a passwd entry.
+        var file = Files.createTempFile(directory, "owner", ".tmp");
+        try {
+            return Files.getOwner(directory).equals(Files.getOwner(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static byte[] digest(final String key, final byte[] bytes) {
+        var digest = newDigest();
+        digest.update(key.getBytes(UTF_8));
+        digest.update(bytes);
+        return digest.digest();
+    }
+
+    private static String getLibraryVersion() {
+        var version = libraryVersion;
+        if (version == null) {
+            var digest = newDigest();
+            for (var resource : GENERATOR_CLASS_RESOURCES) {
+                try (var inputStream = GeneratedRecordCodecProvider.class.getResourceAsStream(resource)) {
+                    if (inputStream != null) {
+                        digest.update(inputStream.readAllBytes());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            version = GeneratedRecordCodecProvider.RecordCodecGenerator.CODEC_FORMAT_VERSION + "-"
+                    + HexFormat.of().formatHex(digest.digest());
+            libraryVersion = version;
+        }
+        return version;
+    }
+
+    private static String hash(final byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event for the definition of a codec class at runtime, whether it was generated or loaded from the
+ * {@link CodecClassCache}.  Codecs generated at build time are loaded as regular classes, and have no event.
+ */
+@Name(CodecGenerationEvent.NAME)
+@Label("Record Codec Generation")
+@Category({"MongoDB", "BSON Record Codecs"})
+@Description("The generation and definition of a codec class for a record")
+@StackTrace(false)
+final class CodecGenerationEvent extends Event {
+    static final String NAME = "org.bson.codecs.record.codegen.CodecGeneration";
+
+    @Label("Record Class")
+    Class<?> recordClass;
+
+    @Label("Type Arguments")
+    String typeArguments;
+
+    @Label("Decoded Components")
+    @Description("The components that a projection codec decodes, or null for a codec that decodes all of them")
+    String decodedComponents;
+
+    @Label("Bytecode Size")
+    @DataAmount
+    int bytecodeSize;
+
+    @Label("Generation Time")
+    @Description("The time to generate the bytes of the class, or to load them from the cache")
+    @Timespan
+    long generationTime;
+
+    @Label("Definition Time")
+    @Timespan
+    long definitionTime;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+}
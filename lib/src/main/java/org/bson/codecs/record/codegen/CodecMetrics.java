@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+/**
+ * The metrics of a generated codec class, which are shared by all the codecs of that class, e.g. for different registries.
+ *
+ * <p>Metrics are disabled by default, and are enabled by setting the {@value #ENABLED_PROPERTY} system property to
+ * {@code true}.  The code that counts is only generated into codec classes while they are enabled, so codecs without
+ * metrics pay nothing for them, and {@link GeneratedRecordCodec#getMetrics()} returns null.  Codecs generated at build time
+ * have no metrics, so they are generated again at runtime instead while metrics are enabled.</p>
+ *
+ * <p>Counters are striped, as a {@link java.util.concurrent.atomic.LongAdder} is, so threads that use the same codec don't
+ * contend on them.  Documents of records nested in other records are counted by the codecs of the nested records too.  The
+ * sizes of documents are only known when they are read from or written to bytes, i.e. with a {@code BsonBinaryReader},
+ * a {@code BsonBinaryWriter}, a buffer, or an array.</p>
+ *
+ * <p>Latencies are only measured when the {@value #LATENCY_SAMPLE_INTERVAL_PROPERTY} system property is set to a positive
+ * number N, and then for one in every N operations on average, chosen at random.  They are kept in histograms
+ * whose buckets are powers of two: bucket {@code i} counts the operations that took at least {@code 2^i} and less than
+ * {@code 2^(i+1)} nanoseconds.</p>
+ */
+public interface CodecMetrics {
+    /**
+     * The system property that enables metrics.
+     */
+    String ENABLED_PROPERTY = "org.bson.codecs.record.codegen.metrics";
+
+    /**
+     * The system property that enables latency histograms, set to the average number of operations per sampled operation.
+     */
+    String LATENCY_SAMPLE_INTERVAL_PROPERTY = "org.bson.codecs.record.codegen.metrics.latencySampleInterval";
+
+    /**
+     * Gets the record class of the codec.
+     *
+     * @return the record class
+     */
+    Class<?> getRecordClass();
+
+    /**
+     * Gets a description of the codec: the name of its record, followed by its type arguments, and for projections, the
+     * components that it decodes.
+     *
+     * @return the description
+     */
+    String getDescription();
+
+    /**
+     * Gets the number of documents encoded, with {@code encode} or {@code encodeTo}.
+     *
+     * @return the number of documents
+     */
+    long getDocumentsEncoded();
+
+    /**
+     * Gets the number of bytes of the documents encoded to bytes.
+     *
+     * @return the number of bytes
+     */
+    long getBytesEncoded();
+
+    /**
+     * Gets the number of documents decoded, including those decoded with {@code decodeAll}.
+     *
+     * @return the number of documents
+     */
+    long getDocumentsDecoded();
+
+    /**
+     * Gets the number of bytes of the documents decoded from bytes.
+     *
+     * @return the number of bytes
+     */
+    long getBytesDecoded();
+
+    /**
+     * Gets the number of elements that were skipped while decoding because they are not the element of any component.
+     * Components that a projection does not decode are not counted.
+     *
+     * @return the number of elements
+     */
+    long getUnknownFieldsSkipped();
+
+    /**
+     * Gets the number of null values read, for components and for the elements of their lists, sets and maps.
+     *
+     * @return the number of null values
+     */
+    long getNullsRead();
+
+    /**
+     * Gets the number of decodes that failed with an exception.
+     *
+     * @return the number of failed decodes
+     */
+    long getDecodeFailures();
+
+    /**
+     * Gets a snapshot of the histogram of sampled encode latencies.
+     *
+     * @return the count of sampled encodes per bucket, or null if latencies are not measured
+     */
+    long[] getEncodeLatencies();
+
+    /**
+     * Gets a snapshot of the histogram of sampled decode latencies.
+     *
+     * @return the count of sampled decodes per bucket, or null if latencies are not measured
+     */
+    long[] getDecodeLatencies();
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.record.codegen.internal.StripedCodecMetrics;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.bson.codecs.record.codegen.internal.RawBsonHelper.DECODER_CONTEXT;
+import static org.bson.codecs.record.codegen.internal.RawBsonHelper.ENCODER_CONTEXT;
+
+/**
+ * Support for {@link GeneratedRecordCodecProvider#prewarm(Collection, org.bson.codecs.configuration.CodecRegistry)}, which
+ * runs round trips of a sample record through a codec until the JIT has compiled its methods.
+ */
+final class CodecPrewarmer {
+
+    /**
+     * The default number of round trips per codec: comfortably more than the invocations after which HotSpot compiles a
+     * method with C2 by default, so that the encode and decode methods are hot once prewarming is done.
+     */
+    static final int DEFAULT_ROUND_TRIPS = 20_000;
+
+    // A valid ObjectId in hex, so that it can also be encoded by string components represented as ObjectIds
+    private static final String SAMPLE_STRING = "5f1d7c3e9b1e8a0012345678";
+
+    /**
+     * Runs round trips of a sample record through every way the codec encodes and decodes.  The sample has a non-null value
+     * for each component that this class knows how to create one for, and null for the others.  Records whose canonical
+     * constructor rejects the sample are not warmed up.
+     *
+     * @param codec the codec
+     * @param roundTrips the number of round trips
+     * @param <T> the record type
+     */
+    static <T> void warm(final GeneratedRecordCodec<T> codec, final int roundTrips) {
+        var sample = codec.getEncoderClass().cast(createSampleRecord(codec.getEncoderClass(), new HashSet<>()));
+        if (sample == null) {
+            return;
+        }
+        // The round trips are not counted into the codecs' metrics, or reported as slow operations
+        StripedCodecMetrics.runUncounted(() -> {
+            var outputBuffer = new BasicOutputBuffer();
+            codec.encodeTo(outputBuffer, sample);
+            // Every encode writes the same bytes to the start of the same array, so the decodes read them from it in place
+            var encoded = ByteBuffer.wrap(outputBuffer.getInternalBuffer(), 0, outputBuffer.getPosition());
+            for (int i = 0; i < roundTrips; i++) {
+                outputBuffer.truncateToPosition(0);
+                codec.sizeOf(sample);
+                codec.encodeTo(outputBuffer, sample);
+                codec.decode(encoded.position(0));
+
+                outputBuffer.truncateToPosition(0);
+                try (var writer = new BsonBinaryWriter(outputBuffer)) {
+                    codec.encode(writer, sample, ENCODER_CONTEXT);
+                }
+                try (var reader = new BsonBinaryReader(encoded.position(0))) {
+                    codec.decode(reader, DECODER_CONTEXT);
+                }
+            }
+        });
+    }
+
+    private static Object createSampleRecord(final Class<?> recordClass, final Set<Class<?>> visiting) {
+        if (!visiting.add(recordClass)) {
+            // a self-referential record is sampled once
+            return null;
+        }
+        try {
+            var components = recordClass.getRecordComponents();
+            var componentTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            var values = new Object[components.length];
+            for (int i = 0; i < components.length; i++) {
+                values[i] = createSampleValue(components[i].getGenericType(), visiting);
+            }
+            var lookup = MethodHandles.privateLookupIn(recordClass, MethodHandles.lookup());
+            return lookup.findConstructor(recordClass, MethodType.methodType(void.class, componentTypes)).invokeWithArguments(values);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // the record is inaccessible, or its constructor rejected the sample values
+            return null;
+        } finally {
+            visiting.remove(recordClass);
+        }
+    }
+
+    private static Object createSampleValue(final Type type, final Set<Class<?>> visiting) {
+        if (type instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() instanceof Class<?> rawType) {
+            var typeArguments = parameterizedType.getActualTypeArguments();
+            if (rawType == List.class || rawType == Collection.class) {
+                return addSampleValue(new ArrayList<>(), typeArguments[0], visiting);
+            } else if (rawType == Set.class) {
+                return addSampleValue(new HashSet<>(), typeArguments[0], visiting);
+            } else if (rawType == Map.class && typeArguments[0] == String.class) {
+                var map = new HashMap<String, Object>();
+                var value = createSampleValue(typeArguments[1], visiting);
+                if (value != null) {
+                    map.put(SAMPLE_STRING, value);
+                }
+                return map;
+            }
+            return null;
+        }
+        if (!(type instanceof Class<?> clazz)) {
+            return null;
+        }
+        if (clazz == String.class) {
+            return SAMPLE_STRING;
+        } else if (clazz == int.class || clazz == Integer.class) {
+            return 1;
+        } else if (clazz == long.class || clazz == Long.class) {
+            return 1L;
+        } else if (clazz == double.class || clazz == Double.class) {
+            return 1.0;
+        } else if (clazz == float.class || clazz == Float.class) {
+            return 1.0f;
+        } else if (clazz == short.class || clazz == Short.class) {
+            return (short) 1;
+        } else if (clazz == byte.class || clazz == Byte.class) {
+            return (byte) 1;
+        } else if (clazz == boolean.class || clazz == Boolean.class) {
+            return true;
+        } else if (clazz == char.class || clazz == Character.class) {
+            return 'a';
+        } else if (clazz == int[].class) {
+            return new int[] {1};
+        } else if (clazz == long[].class) {
+            return new long[] {1};
+        } else if (clazz == double[].class) {
+            return new double[] {1};
+        } else if (clazz == byte[].class) {
+            return new byte[] {1};
+        } else if (clazz == ObjectId.class) {
+            return new ObjectId(SAMPLE_STRING);
+        } else if (clazz.isEnum() && clazz.getEnumConstants().length > 0) {
+            return clazz.getEnumConstants()[0];
+        } else if (clazz.isRecord()) {
+            return createSampleRecord(clazz, visiting);
+        }
+        return null;
+    }
+
+    private static <C extends Collection<Object>> C addSampleValue(final C collection, final Type elementType,
+                                                                   final Set<Class<?>> visiting) {
+        var value = createSampleValue(elementType, visiting);
+        if (value != null) {
+            collection.add(value);
+        }
+        return collection;
+    }
+
+    private CodecPrewarmer() {
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.codecs.Codec;
+import org.bson.io.OutputBuffer;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A codec generated by {@link GeneratedRecordCodecProvider} for a record class.
+ *
+ * <p>Besides the {@link Codec} methods, generated codecs can decode records directly from the bytes of a BSON document, and
+ * encode them directly to an output buffer, without going through a {@link org.bson.BsonReader} or
+ * {@link org.bson.BsonWriter}.</p>
+ *
+ * @param <T> the record type
+ */
+public interface GeneratedRecordCodec<T> extends Codec<T> {
+
+    /**
+     * Decodes a record from the BSON document starting at the buffer's position, and advances the position past the
+     * document.
+     *
+     * <p>Elements of components that the generated codec reads inline are parsed directly from the buffer.  Other elements,
+     * e.g. of components with a codec from the registry, are read through a {@link org.bson.BsonBinaryReader} over the same
+     * bytes.  The buffer's byte order is ignored, and it is not otherwise modified.</p>
+     *
+     * @param buffer the buffer
+     * @return the decoded record
+     */
+    T decode(ByteBuffer buffer);
+
+    /**
+     * Decodes a record from the BSON document starting at the given offset of the array.
+     *
+     * @param bytes the array
+     * @param offset the offset of the document in the array
+     * @return the decoded record
+     * @see #decode(ByteBuffer)
+     */
+    default T decode(byte[] bytes, int offset) {
+        return decode(ByteBuffer.wrap(bytes, offset, bytes.length - offset));
+    }
+
+    /**
+     * Decodes the BSON documents that follow each other from the buffer's position up to its limit, e.g. a cursor batch or
+     * the contents of a {@code .bson} dump file, and passes each record to the consumer in order.
+     *
+     * <p>Generated codecs read all the documents from a single input over the buffer, with a single decoder context.  The
+     * buffer's position is advanced past each document as soon as it is decoded, so if decoding or the consumer fails, the
+     * position is after the last document that was decoded.</p>
+     *
+     * @param buffer the buffer
+     * @param consumer the consumer of the decoded records
+     * @see #decode(ByteBuffer)
+     */
+    default void decodeAll(ByteBuffer buffer, Consumer<? super T> consumer) {
+        while (buffer.hasRemaining()) {
+            consumer.accept(decode(buffer));
+        }
+    }
+
+    /**
+     * Decodes the BSON documents that follow each other from the buffer's position up to its limit.
+     *
+     * @param buffer the buffer
+     * @return the decoded records, in order
+     * @see #decodeAll(ByteBuffer, Consumer)
+     */
+    default List<T> decodeAll(ByteBuffer buffer) {
+        var records = new ArrayList<T>();
+        decodeAll(buffer, records::add);
+        return records;
+    }
+
+    /**
+     * Encodes a record as a BSON document at the current position of the buffer.
+     *
+     * <p>The type and name of each element are encoded once, when the codec class is generated, and values of components
+     * that the generated codec writes inline are written straight to the buffer.  Components with a codec from the registry
+     * are written through a {@link org.bson.BsonBinaryWriter} over the same buffer.  The result is the same as encoding the
+     * record with a {@code BsonBinaryWriter}.</p>
+     *
+     * @param buffer the buffer
+     * @param value the record
+     */
+    void encodeTo(OutputBuffer buffer, T value);
+
+    /**
+     * Computes the exact size of the BSON document that a record is encoded to, e.g. to allocate an output buffer of the
+     * right capacity up front.
+     *
+     * <p>The sizes of fixed-size values are known when the codec class is generated, and strings are measured without
+     * encoding them.  Records in components with a generated codec compute their size directly, while other components with
+     * a codec from the registry are encoded into a scratch buffer.</p>
+     *
+     * @param value the record
+     * @return the size of the encoded document, in bytes
+     */
+    int sizeOf(T value);
+
+    /**
+     * Gets a method handle that extracts the value of one component from the BSON document starting at a buffer's position,
+     * without creating the record or a reader.  Other elements are skipped without being decoded, and the buffer is not
+     * modified.
+     *
+     * <p>The handle takes the buffer and returns the value as the declared type of the component, e.g.
+     * {@code (ByteBuffer)int} for an {@code int} component, so that it can be called with {@code invokeExact} without
+     * boxing.  As with {@link #decode(ByteBuffer)}, a component whose element is missing has its default value: null, or
+     * zero for primitives.</p>
+     *
+     * <pre>{@code
+     * MethodHandle customerId = codec.getExtractor("customerId");
+     * int id = (int) customerId.invokeExact(buffer);
+     * }</pre>
+     *
+     * @param componentName the name of the record component
+     * @return the method handle
+     * @throws IllegalArgumentException if there is no component with that name
+     */
+    MethodHandle getExtractor(String componentName);
+
+    /**
+     * Gets the metrics of the codec's class, if metrics were enabled when it was generated.
+     *
+     * @return the metrics, or null if they are not enabled
+     * @see CodecMetrics
+     */
+    default CodecMetrics getMetrics() {
+        return null;
+    }
+}
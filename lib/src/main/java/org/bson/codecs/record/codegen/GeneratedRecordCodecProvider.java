@@ -16,15 +16,17 @@
 
 package org.bson.codecs.record.codegen;
 
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonInvalidOperationException;
 import org.bson.BsonReader;
 import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
-import org.bson.codecs.Decoder;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.Encoder;
 import org.bson.codecs.EncoderContext;
+import org.bson.codecs.EnumCodec;
 import org.bson.codecs.RepresentationConfigurable;
 import org.bson.codecs.configuration.CodecConfigurationException;
 import org.bson.codecs.configuration.CodecProvider;
@@ -36,37 +38,78 @@ import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.bson.codecs.pojo.annotations.BsonRepresentation;
+import org.bson.codecs.record.codegen.internal.CodecCallSite;
+import org.bson.codecs.record.codegen.internal.CodecOperationEvent;
+import org.bson.codecs.record.codegen.internal.FieldNameMatcher;
+import org.bson.codecs.record.codegen.internal.PrimitiveArrays;
+import org.bson.codecs.record.codegen.internal.RawBsonHelper;
+import org.bson.codecs.record.codegen.internal.StripedCodecMetrics;
 import org.bson.internal.NumberCodecHelper;
 import org.bson.internal.StringCodecHelper;
+import org.bson.io.BsonInput;
+import org.bson.io.BsonInputMark;
+import org.bson.io.BsonOutput;
+import org.bson.io.OutputBuffer;
+import org.bson.types.ObjectId;
 
 import java.lang.annotation.Annotation;
 import java.lang.classfile.ClassBuilder;
 import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassHierarchyResolver;
 import java.lang.classfile.CodeBuilder;
 import java.lang.classfile.Label;
 import java.lang.classfile.instruction.SwitchCase;
 import java.lang.classfile.TypeKind;
 import java.lang.constant.ClassDesc;
 import java.lang.constant.ConstantDescs;
+import java.lang.constant.DirectMethodHandleDesc;
+import java.lang.constant.DynamicCallSiteDesc;
 import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.AccessFlag;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static java.lang.classfile.ClassFile.ACC_FINAL;
 import static java.lang.classfile.ClassFile.ACC_PRIVATE;
 import static java.lang.classfile.ClassFile.ACC_PUBLIC;
+import static java.lang.classfile.ClassFile.ACC_STATIC;
 import static java.lang.constant.ConstantDescs.CD_Class;
+import static java.lang.constant.ConstantDescs.CD_Collection;
+import static java.lang.constant.ConstantDescs.CD_Enum;
 import static java.lang.constant.ConstantDescs.CD_List;
+import static java.lang.constant.ConstantDescs.CD_Map;
 import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_Set;
 import static java.lang.constant.ConstantDescs.CD_String;
 import static java.lang.constant.ConstantDescs.CD_boolean;
 import static java.lang.constant.ConstantDescs.CD_byte;
@@ -77,71 +120,503 @@ import static java.lang.constant.ConstantDescs.CD_int;
 import static java.lang.constant.ConstantDescs.CD_long;
 import static java.lang.constant.ConstantDescs.CD_short;
 import static java.lang.constant.ConstantDescs.CD_void;
+import static java.lang.constant.ConstantDescs.CLASS_INIT_NAME;
 import static java.lang.constant.ConstantDescs.INIT_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.bson.assertions.Assertions.assertNotNull;
 
 public class GeneratedRecordCodecProvider implements CodecProvider {
+    /**
+     * Generated codec classes, per record class and then per list of type arguments.  The classes do not depend on the
+     * registry, so they are shared by all providers.  Using a ClassValue keeps the cache from pinning the record class.
+     */
+    private static final ClassValue<ConcurrentMap<List<Type>, RecordCodecGenerator.CodecClass<?>>> CODEC_CLASSES =
+            new ClassValue<>() {
+                @Override
+                protected ConcurrentMap<List<Type>, RecordCodecGenerator.CodecClass<?>> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * Generated projection codec classes, per record class and then per set of decoded component names.
+     */
+    private static final ClassValue<ConcurrentMap<Set<String>, RecordCodecGenerator.CodecClass<?>>> PROJECTION_CODEC_CLASSES =
+            new ClassValue<>() {
+                @Override
+                protected ConcurrentMap<Set<String>, RecordCodecGenerator.CodecClass<?>> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * Codec instances created by this provider, per registry, and then per record class, type arguments and decoded
+     * components.  A provider may be shared by many registries, e.g. one per client or tenant, so the registries are only
+     * weakly referenced.  Codecs reference their registry, so they are only weakly referenced too, or they would keep their
+     * registry's entry alive; registries that cache their codecs, as the driver's do, keep them reachable while in use.
+     * The entries of collected registries are removed when their keys are enqueued.
+     */
+    private final ConcurrentMap<RegistryKey, ConcurrentMap<CodecKey, WeakReference<GeneratedRecordCodec<?>>>> codecs =
+            new ConcurrentHashMap<>();
+    private final ReferenceQueue<CodecRegistry> collectedRegistries = new ReferenceQueue<>();
+
     @Override
-    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    public <T> GeneratedRecordCodec<T> get(Class<T> clazz, CodecRegistry registry) {
         return get(clazz, List.of(), registry);
     }
 
     @Override
-    public <T> Codec<T> get(Class<T> clazz, List<Type> typeArguments, CodecRegistry registry) {
+    public <T> GeneratedRecordCodec<T> get(Class<T> clazz, List<Type> typeArguments, CodecRegistry registry) {
         if (!assertNotNull(clazz).isRecord()) {
             return null;
         }
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        Codec<T> result = new RecordCodecGenerator(clazz, typeArguments, registry).generateCodec();
+        var key = new CodecKey(clazz, List.copyOf(typeArguments), null);
+        return getCodec(key, registry, () -> getCodecClass(clazz, key.typeArguments()));
+    }
+
+    /**
+     * Gets a codec for the record that only decodes the given components.  The values of the other components are skipped
+     * without being decoded, and those components are left with their default values: null, or zero for primitives.  Reads
+     * that only need a few components of a large record then cost what they use.  Records are still encoded in full.
+     *
+     * <p>Projection codecs are not returned by {@link #get(Class, CodecRegistry)}, so they are not used for records that
+     * are nested in other records.</p>
+     *
+     * @param clazz the record class
+     * @param componentNames the names of the record components to decode
+     * @param registry the registry to get the codecs of components from
+     * @param <T> the type of the record
+     * @return the projection codec
+     * @throws CodecConfigurationException if the class is not a record, or one of the names is not one of its components
+     */
+    public <T extends Record> GeneratedRecordCodec<T> getProjection(final Class<T> clazz, final Set<String> componentNames,
+                                                                    final CodecRegistry registry) {
+        if (!assertNotNull(clazz).isRecord()) {
+            throw new CodecConfigurationException(format("%s is not a record", clazz.getName()));
+        }
+        var key = new CodecKey(clazz, List.of(), Set.copyOf(componentNames));
+        return getCodec(key, registry, () -> getProjectionCodecClass(clazz, key.decodedComponentNames()));
+    }
+
+    /**
+     * Gets the codecs for the records ahead of their first use, e.g. before an application reports that it is ready.  The
+     * codec classes are generated and defined in parallel, and then each codec runs round trips of a sample record through
+     * its encode and decode methods, again in parallel, until the JIT has compiled them.  This also resolves the codecs of
+     * their components from the registry.
+     *
+     * <p>Codecs that were generated at build time are loaded rather than generated, but they are still warmed up.  The round
+     * trips are not counted into the {@link CodecMetrics} of the codecs, or reported as slow operations to JDK Flight
+     * Recorder.</p>
+     *
+     * @param recordClasses the record classes
+     * @param registry the registry that the codecs will be used with
+     * @throws CodecConfigurationException if the codec of one of the records can't be generated
+     * @see #prewarm(Collection, CodecRegistry, ForkJoinPool, int)
+     */
+    public void prewarm(final Collection<Class<? extends Record>> recordClasses, final CodecRegistry registry) {
+        prewarm(recordClasses, registry, ForkJoinPool.commonPool(), CodecPrewarmer.DEFAULT_ROUND_TRIPS);
+    }
+
+    /**
+     * Gets the codecs for the records ahead of their first use in the given pool, e.g. to leave the common pool to the
+     * application while it starts, and with the given number of round trips per codec.
+     *
+     * @param recordClasses the record classes
+     * @param registry the registry that the codecs will be used with
+     * @param pool the pool to generate and warm up the codecs in
+     * @param roundTrips the number of round trips of a sample record per codec, or zero to only get the codecs
+     * @throws CodecConfigurationException if the codec of one of the records can't be generated
+     * @throws IllegalArgumentException if the number of round trips is negative
+     * @see #prewarm(Collection, CodecRegistry)
+     */
+    public void prewarm(final Collection<Class<? extends Record>> recordClasses, final CodecRegistry registry,
+                        final ForkJoinPool pool, final int roundTrips) {
+        if (roundTrips < 0) {
+            throw new IllegalArgumentException("roundTrips must not be negative");
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            var codecTasks = recordClasses.stream()
+                    .map(recordClass -> ForkJoinTask.<GeneratedRecordCodec<?>>adapt(() -> get(recordClass, registry)))
+                    .toList();
+            ForkJoinTask.invokeAll(codecTasks);
+            ForkJoinTask.invokeAll(codecTasks.stream()
+                    .map(codecTask -> ForkJoinTask.adapt(() -> CodecPrewarmer.warm(codecTask.join(), roundTrips)))
+                    .toList());
+        }));
+    }
+
+    /**
+     * Gets the metrics of the codecs that this provider has created, including the codecs of nested records.  Codecs of the
+     * same class share their metrics, so each is only returned once.
+     *
+     * @return the metrics, or an empty list unless metrics are enabled
+     * @see CodecMetrics
+     */
+    public List<CodecMetrics> getMetrics() {
+        return codecs.values().stream()
+                .flatMap(map -> map.values().stream())
+                .map(WeakReference::get)
+                .filter(Objects::nonNull)
+                .<CodecMetrics>map(GeneratedRecordCodec::getMetrics)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    private <T> GeneratedRecordCodec<T> getCodec(final CodecKey key, final CodecRegistry registry,
+                                                 final Supplier<RecordCodecGenerator.CodecClass<T>> codecClassSupplier) {
+        var registryCodecs = getRegistryCodecs(registry);
+        var reference = registryCodecs.get(key);
+        var codec = reference != null ? reference.get() : null;
+        if (codec == null) {
+            // Component codecs are resolved from the registry when a codec is created, which may call back into this
+            // provider, so codecs are not created inside a ConcurrentHashMap compute function.  Losing the race just discards a
+            // cheap instance, since the expensive class generation is single-flight in getCodecClass.
+            codec = codecClassSupplier.get().newCodec(registry);
+            var newReference = new WeakReference<GeneratedRecordCodec<?>>(codec);
+            while (true) {
+                var existingReference = registryCodecs.putIfAbsent(key, newReference);
+                var existing = existingReference != null ? existingReference.get() : null;
+                if (existingReference == null) {
+                    break;
+                } else if (existing != null) {
+                    codec = existing;
+                    break;
+                } else if (registryCodecs.replace(key, existingReference, newReference)) {
+                    // the existing codec was collected
+                    break;
+                }
+            }
+        }
+        @SuppressWarnings("unchecked")
+        GeneratedRecordCodec<T> result = (GeneratedRecordCodec<T>) codec;
         return result;
     }
 
+    private ConcurrentMap<CodecKey, WeakReference<GeneratedRecordCodec<?>>> getRegistryCodecs(final CodecRegistry registry) {
+        var registryCodecs = codecs.get(new RegistryKey(registry, null));
+        if (registryCodecs == null) {
+            Reference<? extends CodecRegistry> collected;
+            while ((collected = collectedRegistries.poll()) != null) {
+                codecs.remove(collected);
+            }
+            registryCodecs = codecs.computeIfAbsent(new RegistryKey(registry, collectedRegistries), k -> new ConcurrentHashMap<>());
+        }
+        return registryCodecs;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> RecordCodecGenerator.CodecClass<T> getCodecClass(final Class<T> clazz, final List<Type> typeArguments) {
+        // computeIfAbsent blocks concurrent callers for the same key until the first one has defined the class, so
+        // many threads asking for the same record at startup generate exactly one class
+        return (RecordCodecGenerator.CodecClass<T>) CODEC_CLASSES.get(clazz).computeIfAbsent(typeArguments, k -> {
+            var generator = new RecordCodecGenerator(clazz, k);
+            // Codecs generated at build time are only available for records without type arguments, and have no metrics
+            var codecClass = k.isEmpty() && !RecordCodecGenerator.METRICS_ENABLED ? generator.findPrecompiledCodecClass() : null;
+            return codecClass != null ? codecClass : generator.defineCodecClass();
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> RecordCodecGenerator.CodecClass<T> getProjectionCodecClass(final Class<T> clazz,
+                                                                                  final Set<String> decodedComponentNames) {
+        return (RecordCodecGenerator.CodecClass<T>) PROJECTION_CODEC_CLASSES.get(clazz).computeIfAbsent(decodedComponentNames,
+                k -> new RecordCodecGenerator(clazz, k).defineCodecClass());
+    }
+
+    // The decoded component names are null for codecs that decode all components
+    private record CodecKey(Class<?> clazz, List<Type> typeArguments, Set<String> decodedComponentNames) {
+    }
+
+    // A weak reference to a registry, equal to the other references to the same registry until it is collected.  Keys that
+    // are only used to look up an entry are not registered with a queue.
+    private static final class RegistryKey extends WeakReference<CodecRegistry> {
+        private final int hashCode;
+
+        RegistryKey(final CodecRegistry registry, final ReferenceQueue<CodecRegistry> queue) {
+            super(registry, queue);
+            this.hashCode = System.identityHashCode(registry);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RegistryKey other)) {
+                return false;
+            }
+            var registry = get();
+            return registry != null && registry == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     public static class RecordCodecGenerator<T extends Record> {
         private static final ClassDesc codecClassDesc = ClassDesc.of(Codec.class.getName());
         private static final ClassDesc bsonTypeClassDesc = ClassDesc.of(BsonType.class.getName());
         private static final ClassDesc bsonWriterClassDesc = ClassDesc.of(BsonWriter.class.getName());
         private static final ClassDesc encoderContextClassDesc = ClassDesc.of(EncoderContext.class.getName());
         private static final ClassDesc encoderClassDesc = ClassDesc.of(Encoder.class.getName());
+        private static final ClassDesc enumCodecClassDesc = ClassDesc.of(EnumCodec.class.getName());
         private static final ClassDesc bsonReaderClassDesc = ClassDesc.of(BsonReader.class.getName());
         private static final ClassDesc decoderContextClassDesc = ClassDesc.of(DecoderContext.class.getName());
-        private static final ClassDesc decoderClassDesc = ClassDesc.of(Decoder.class.getName());
         private static final ClassDesc numberCodecHelperClassDesc = ClassDesc.of(NumberCodecHelper.class.getName());
         private static final ClassDesc stringCodecHelperClassDesc = ClassDesc.of(StringCodecHelper.class.getName());
         private static final ClassDesc representationConfigurableClassDesc = ClassDesc.of(RepresentationConfigurable.class.getName());
         private static final ClassDesc codecConfigurationExceptionClassDesc = ClassDesc.of(CodecConfigurationException.class.getName());
         private static final ClassDesc bsonInvalidOperationExceptionClassDesc = ClassDesc.of(BsonInvalidOperationException.class.getName());
+        private static final ClassDesc objectIdClassDesc = ClassDesc.of(ObjectId.class.getName());
+        private static final ClassDesc bsonBinaryReaderClassDesc = ClassDesc.of(BsonBinaryReader.class.getName());
+        private static final ClassDesc bsonInputClassDesc = ClassDesc.of(BsonInput.class.getName());
+        private static final ClassDesc bsonBinaryWriterClassDesc = ClassDesc.of(BsonBinaryWriter.class.getName());
+        private static final ClassDesc bsonOutputClassDesc = ClassDesc.of(BsonOutput.class.getName());
+        private static final ClassDesc outputBufferClassDesc = ClassDesc.of(OutputBuffer.class.getName());
+        private static final ClassDesc bsonInputMarkClassDesc = ClassDesc.of(BsonInputMark.class.getName());
+        private static final ClassDesc fieldNameMatcherClassDesc = ClassDesc.of(FieldNameMatcher.class.getName());
+        private static final ClassDesc rawBsonHelperClassDesc = ClassDesc.of(RawBsonHelper.class.getName());
+        private static final DirectMethodHandleDesc codecCallSiteBootstrap = ConstantDescs.ofCallsiteBootstrap(
+                ClassDesc.of(CodecCallSite.class.getName()), "bootstrap", ConstantDescs.CD_CallSite);
+        private static final ClassDesc codecOperationEventClassDesc = ClassDesc.of(CodecOperationEvent.class.getName());
+        private static final ClassDesc codecMetricsClassDesc = ClassDesc.of(CodecMetrics.class.getName());
+        private static final ClassDesc stripedCodecMetricsClassDesc = ClassDesc.of(StripedCodecMetrics.class.getName());
+        private static final ClassDesc generatedRecordCodecClassDesc = ClassDesc.of(GeneratedRecordCodec.class.getName());
+        private static final ClassDesc primitiveArraysClassDesc = ClassDesc.of(PrimitiveArrays.class.getName());
+        private static final ClassDesc iteratorClassDesc = ClassDesc.of(Iterator.class.getName());
+        private static final ClassDesc mapEntryClassDesc = ClassDesc.of(Map.Entry.class.getName());
+        private static final ClassDesc arrayListClassDesc = ClassDesc.of(ArrayList.class.getName());
+        private static final ClassDesc hashSetClassDesc = ClassDesc.of(HashSet.class.getName());
+        private static final ClassDesc hashMapClassDesc = ClassDesc.of(HashMap.class.getName());
+
+        /**
+         * The version of the contract between generated codec classes and this library.  Codecs generated at build time
+         * are only used if they were generated for the same version, so bump it whenever that contract changes.
+         */
+        static final int CODEC_FORMAT_VERSION = 9;
+
+        /**
+         * Whether codec classes generated at runtime count their {@link CodecMetrics}.
+         */
+        static final boolean METRICS_ENABLED = Boolean.getBoolean(CodecMetrics.ENABLED_PROPERTY);
 
         private static final int thisSlot = 0;
 
+        private static final AtomicInteger namedCodecClassCounter = new AtomicInteger();
+
         private final Class<T> recordClass;
+        private final List<Type> typeArguments;
         private final ClassDesc recordClassDesc;
+        private final MethodHandles.Lookup lookup;
+        private final boolean hidden;
         private final ClassDesc recordCodecClassDesc;
         private final CodecRegistry registry;
         private final List<ComponentModel> componentModels;
+        // The components in the order they are encoded, with _id first
+        private final List<ComponentModel> encodedComponentModels;
+        // The names of the components that are decoded, or null if all of them are; the values of the others are skipped
+        private final Set<String> decodedComponentNames;
+        // Whether the code that counts the codec's metrics is generated
+        private final boolean metrics;
 
         public RecordCodecGenerator(Class<T> recordClass, final List<Type> types, CodecRegistry registry) {
+            this(recordClass, types, registry, privateLookupIn(recordClass), null, METRICS_ENABLED);
+        }
+
+        RecordCodecGenerator(Class<T> recordClass, final List<Type> types) {
+            this(recordClass, types, null);
+        }
+
+        RecordCodecGenerator(Class<T> recordClass, final List<Type> types, final boolean metrics) {
+            this(recordClass, types, null, privateLookupIn(recordClass), null, metrics);
+        }
+
+        RecordCodecGenerator(Class<T> recordClass, final Set<String> decodedComponentNames) {
+            this(recordClass, List.of(), null, privateLookupIn(recordClass), decodedComponentNames, METRICS_ENABLED);
+        }
+
+        private RecordCodecGenerator(Class<T> recordClass, final List<Type> types, final CodecRegistry registry,
+                                     final MethodHandles.Lookup lookup, final Set<String> decodedComponentNames,
+                                     final boolean metrics) {
             this.recordClass = recordClass;
+            this.typeArguments = types;
             this.recordClassDesc = ClassDesc.of(recordClass.getName());
-            this.recordCodecClassDesc = ClassDesc.of("org.bson.codecs.record", recordClass.getSimpleName() + "Codec");
+            this.lookup = lookup;
+            // Defining a hidden class requires full privilege access, which a private lookup only has when the record is in
+            // the same module as this library.  Otherwise, e.g. for a record loaded by a child class loader with its own
+            // unnamed module, fall back to a regular class in the record's package.  Without a lookup, the class is
+            // generated at build time and later loaded by name.
+            this.hidden = lookup != null && lookup.hasFullPrivilegeAccess();
+            // Codec classes must be named in the package of the record.  The JVM appends a unique suffix to the name of a
+            // hidden class on definition, so same-named records and different type arguments never clash, but regular
+            // classes defined at runtime need a unique name of their own.
+            this.recordCodecClassDesc = hidden || lookup == null
+                    ? ClassDesc.of(PrecompiledCodecs.getCodecClassName(recordClass))
+                    : ClassDesc.of(PrecompiledCodecs.getCodecClassName(recordClass) + "$" + namedCodecClassCounter.incrementAndGet());
             this.registry = registry;
             this.componentModels = getComponentModels(recordClass, types);
+            this.encodedComponentModels = getEncodedComponentModels(componentModels);
+            this.decodedComponentNames = decodedComponentNames;
+            this.metrics = metrics;
+            if (decodedComponentNames != null) {
+                var componentNames = componentModels.stream().map(componentModel -> componentModel.name).toList();
+                for (var name : decodedComponentNames) {
+                    if (!componentNames.contains(name)) {
+                        throw new CodecConfigurationException(format("'%s' is not a component of record '%s'", name,
+                                recordClass.getName()));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Generates the bytes of a codec class for the given record, to be written out at build time and loaded by name at
+         * runtime.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static byte[] generatePrecompiledCodecClass(final Class<?> recordClass) {
+            return new RecordCodecGenerator(recordClass, List.of(), null, null, null, false).generateClass();
+        }
+
+        public GeneratedRecordCodec<T> generateCodec() {
+            return defineCodecClass().newCodec(registry);
+        }
+
+        CodecClass<T> defineCodecClass() {
+            return defineCodecClass(CodecClassCache.getDefault());
+        }
+
+        /**
+         * Defines the codec class, loading its bytes from the cache if it has them.  Only hidden classes are cached, since
+         * regular classes defined at runtime have a unique name per run.
+         *
+         * @param cache the cache, or null to always generate the class
+         */
+        CodecClass<T> defineCodecClass(final CodecClassCache cache) {
+            var event = new CodecGenerationEvent();
+            event.begin();
+            var cacheKey = cache != null && hidden ? CodecClassCache.getKey(recordClass, getShape()) : null;
+            var codecClass = cacheKey != null ? defineCachedCodecClass(cache, cacheKey, event) : null;
+            if (codecClass == null) {
+                var start = System.nanoTime();
+                var bytes = generateClass();
+                event.generationTime = System.nanoTime() - start;
+                if (cacheKey != null) {
+                    cache.store(cacheKey, bytes);
+                }
+                codecClass = defineCodecClass(bytes, event);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.recordClass = recordClass;
+                event.typeArguments = typeArguments.isEmpty() ? null : typeArguments.toString();
+                event.decodedComponents = decodedComponentNames == null ? null : new TreeSet<>(decodedComponentNames).toString();
+                event.commit();
+            }
+            return codecClass;
+        }
+
+        private CodecClass<T> defineCachedCodecClass(final CodecClassCache cache, final String cacheKey,
+                                                     final CodecGenerationEvent event) {
+            var start = System.nanoTime();
+            var bytes = cache.load(cacheKey);
+            event.generationTime = System.nanoTime() - start;
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                var codecClass = defineCodecClass(bytes, event);
+                event.cacheHit = true;
+                return codecClass;
+            } catch (LinkageError | IllegalArgumentException e) {
+                // a corrupted class, or e.g. its stack maps no longer verify against changed component types
+                cache.remove(cacheKey);
+                return null;
+            }
+        }
+
+        private CodecClass<T> defineCodecClass(final byte[] bytes, final CodecGenerationEvent event) {
+            var start = System.nanoTime();
+            var codecClass = toCodecClass(defineClass(bytes));
+            event.definitionTime = System.nanoTime() - start;
+            event.bytecodeSize = bytes.length;
+            return codecClass;
         }
 
-        public Codec<T> generateCodec() {
-            var bytes = generateClass();
+        private MethodHandles.Lookup defineClass(final byte[] bytes) {
+            // The codec is a nestmate of the record, so it can access package-private and private nested records, and it is
+            // resolved against the record's class loader.  Hidden classes are not strongly reachable from that loader, and
+            // the JIT trusts their final fields as constants.
+            try {
+                return hidden
+                        ? lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE)
+                        : lookup.in(lookup.defineClass(bytes));
+            } catch (IllegalAccessException e) {
+                throw new CodecConfigurationException(format("Unable to define codec for record %s", recordClass.getName()), e);
+            }
+        }
 
-            // for debugging
-//            try {
-//                Files.write(Path.of("/tmp", recordClass.getSimpleName() + "Codec.class"), bytes);
-//            } catch (IOException e) {
-//                throw new RuntimeException(e);
-//            }
+        /**
+         * Describes everything that the bytes of the codec class depend on, besides this library: the name of the record,
+         * and for each component, as resolved against the type arguments, how it is named, typed and represented in BSON,
+         * and whether its type is a record or an enum.
+         * The constants of enum components are included too, since the generated code refers to them by name.  For
+         * projections, the names of the decoded components are appended, and so is whether the class counts metrics.
+         */
+        String getShape() {
+            var shape = new StringBuilder(recordClass.getName());
+            for (var componentModel : componentModels) {
+                shape.append('\n').append(componentModel.name)
+                        .append(' ').append(componentModel.fieldName)
+                        .append(' ').append(componentModel.classDesc.descriptorString())
+                        .append(' ').append(componentModel.rawType.getName())
+                        .append(' ').append(componentModel.isRecord)
+                        .append(' ').append(componentModel.isEnum)
+                        .append(' ').append(componentModel.typeArguments)
+                        .append(' ').append(componentModel.bsonRepresentationType)
+                        .append(' ').append(componentModel.containerTypes)
+                        .append(' ').append(componentModel.elementType);
+                if (componentModel.isEnum) {
+                    // the names of the constants, as their toString() may be overridden
+                    shape.append(' ').append(Arrays.stream(componentModel.rawType.getEnumConstants())
+                            .map(constant -> ((Enum<?>) constant).name())
+                            .toList());
+                }
+            }
+            if (decodedComponentNames != null) {
+                shape.append('\n').append(new TreeSet<>(decodedComponentNames));
+            }
+            if (metrics) {
+                shape.append("\nmetrics");
+            }
+            return shape.toString();
+        }
 
-            var loader = new ByteArrayClassLoader();
-            var clazz = loader.defineClass(null, bytes);
+        /**
+         * Finds the codec class generated for the record at build time, if there is one.
+         *
+         * @return the codec class, or null if the record's class loader has no precompiled codec for it
+         */
+        CodecClass<T> findPrecompiledCodecClass() {
+            if (!PrecompiledCodecs.isPrecompiled(recordClass)) {
+                return null;
+            }
+            try {
+                var codecClass = Class.forName(PrecompiledCodecs.getCodecClassName(recordClass), true, recordClass.getClassLoader());
+                return toCodecClass(lookup.in(codecClass));
+            } catch (ClassNotFoundException e) {
+                throw new CodecConfigurationException(format("Precompiled codec for record %s is listed in %s but could not be loaded",
+                        recordClass.getName(), PrecompiledCodecs.INDEX_RESOURCE), e);
+            }
+        }
 
+        private CodecClass<T> toCodecClass(final MethodHandles.Lookup codecLookup) {
             // Create a map of component names to their type arguments
-            var typeArgumentsMap = new java.util.HashMap<String, List<Type>>();
+            var typeArgumentsMap = new HashMap<String, List<Type>>();
             for (var componentModel : componentModels) {
                 if (!componentModel.typeArguments.isEmpty()) {
                     typeArgumentsMap.put(componentModel.name, componentModel.typeArguments);
@@ -149,27 +624,51 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             }
 
             try {
-                //noinspection unchecked
-                return (Codec<T>) clazz.getDeclaredConstructor(CodecRegistry.class, java.util.Map.class)
-                        .newInstance(registry, typeArgumentsMap);
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                     NoSuchMethodException e) {
+                var constructor = codecLookup.findConstructor(codecLookup.lookupClass(),
+                                MethodType.methodType(void.class, CodecRegistry.class, Map.class))
+                        .asType(MethodType.methodType(GeneratedRecordCodec.class, CodecRegistry.class, Map.class));
+                return new CodecClass<>(codecLookup.lookupClass(), constructor, Map.copyOf(typeArgumentsMap));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private static MethodHandles.Lookup privateLookupIn(final Class<?> recordClass) {
+            try {
+                return MethodHandles.privateLookupIn(recordClass, MethodHandles.lookup());
+            } catch (IllegalAccessException e) {
+                throw new CodecConfigurationException(
+                        format("Unable to access record %s. If it is in a named module, its package must be opened to %s",
+                                recordClass.getName(), GeneratedRecordCodecProvider.class.getModule()), e);
+            }
+        }
+
         private byte[] generateClass() {
-            return ClassFile.of().build(
+            // Resolve types the stack map generator needs through the record's own class loader, which may be a child of
+            // the system class loader (e.g. in a fat jar, a plugin, or the build-time class path)
+            var classHierarchyResolver = ClassHierarchyResolver.defaultResolver()
+                    .orElse(ClassHierarchyResolver.ofClassLoading(recordClass.getClassLoader()));
+            return ClassFile.of(ClassFile.ClassHierarchyResolverOption.of(classHierarchyResolver)).build(
                     recordCodecClassDesc,
                     clb -> {
                         clb
                                 .withFlags(AccessFlag.PUBLIC, AccessFlag.SUPER)
-                                .withInterfaceSymbols(ClassDesc.of(Codec.class.getName()));
+                                .withInterfaceSymbols(generatedRecordCodecClassDesc);
                         generateFields(clb);
+                        generateStaticInitializer(clb);
                         generateConstructor(clb);
+                        generateCodecMethods(clb);
                         generateGetEncoderClassMethod(clb);
+                        if (metrics) {
+                            generateGetMetricsMethod(clb);
+                        }
                         generateEncodeMethod(clb);
+                        generateEncodeToMethod(clb);
+                        generateSizeOfMethod(clb);
                         generateDecodeMethod(clb);
+                        generateExtractMethods(clb);
+                        generateContainerMethods(clb);
+                        generateEnumValueOfMethods(clb);
                     });
         }
 
@@ -177,14 +676,149 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             // Field to store the type arguments map
             clb.withField("typeArgumentsMap", ClassDesc.of(java.util.Map.class.getName()), ACC_PRIVATE | ACC_FINAL);
 
+            // Field to store the matcher of encoded field names, for decoding from binary readers
+            clb.withField("fieldNameMatcher", fieldNameMatcherClassDesc, ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+
+            // Fields to store the encoded type and name of the elements of inline, record and enum components, for encodeTo
             for (var componentModel : componentModels) {
-                if (componentModel.isNullable) {
+                if (componentModel.hasElementHeader()) {
+                    clb.withField(componentModel.name + "Header", CD_byte.arrayType(), ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+                }
+            }
+
+            // Fields to store the encoded names of the constants of enum components, indexed by ordinal
+            for (var componentModel : componentModels) {
+                if (componentModel.isEnum) {
+                    clb.withField(componentModel.name + "Values", CD_byte.arrayType().arrayType(), ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+                }
+            }
+
+            // Field to store the metrics of the codec class, which all its codecs count into
+            if (metrics) {
+                clb.withField("metrics", stripedCodecMetricsClassDesc, ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+
+                // Fields to store the metrics that this codec counts into, which are StripedCodecMetrics.UNCOUNTED for the
+                // uncounted copy of the codec, and that copy, which runs the operations that are not counted
+                clb.withField("counters", stripedCodecMetricsClassDesc, ACC_PRIVATE | ACC_FINAL);
+                clb.withField("uncounted", recordCodecClassDesc, ACC_PRIVATE | ACC_FINAL);
+            }
+
+            // Field to store the registry that the codecs of record components are resolved from on first use
+            clb.withField("codecRegistry", ClassDesc.of(CodecRegistry.class.getName()), ACC_PRIVATE | ACC_FINAL);
+
+            // Fields to store the codecs of components, which are only not final for records, as they are resolved lazily
+            for (var componentModel : componentModels) {
+                if (componentModel.hasCodecField()) {
                     clb.withField(componentModel.name + "Codec",
-                            ClassDesc.of("org.bson.codecs", "Codec"), ACC_PRIVATE | ACC_FINAL);
+                            ClassDesc.of("org.bson.codecs", "Codec"),
+                            componentModel.isCodecResolvedLazily() ? ACC_PRIVATE : ACC_PRIVATE | ACC_FINAL);
                 }
             }
         }
 
+        private void generateStaticInitializer(ClassBuilder clb) {
+            clb.withMethodBody(CLASS_INIT_NAME, ConstantDescs.MTD_void, ACC_STATIC,
+                    cob -> {
+                        // fieldNameMatcher = new FieldNameMatcher(field names in encoding order)
+                        cob
+                                .new_(fieldNameMatcherClassDesc)
+                                .dup()
+                                .loadConstant(encodedComponentModels.size())
+                                .anewarray(CD_String);
+                        for (int i = 0; i < encodedComponentModels.size(); i++) {
+                            cob
+                                    .dup()
+                                    .loadConstant(i)
+                                    .ldc(clb.constantPool().stringEntry(encodedComponentModels.get(i).fieldName))
+                                    .aastore();
+                        }
+                        cob
+                                .invokespecial(fieldNameMatcherClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String.arrayType()))
+                                .putstatic(recordCodecClassDesc, "fieldNameMatcher", fieldNameMatcherClassDesc);
+
+                        // componentHeader = RawBsonHelper.getElementHeader(BsonType, field name)
+                        for (var componentModel : componentModels) {
+                            if (componentModel.hasElementHeader()) {
+                                cob
+                                        .getstatic(bsonTypeClassDesc, getEncodedBsonType(componentModel).name(), bsonTypeClassDesc)
+                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                                        .invokestatic(rawBsonHelperClassDesc, "getElementHeader",
+                                                MethodTypeDesc.of(CD_byte.arrayType(), bsonTypeClassDesc, CD_String))
+                                        .putstatic(recordCodecClassDesc, componentModel.name + "Header", CD_byte.arrayType());
+                            }
+                        }
+
+                        // componentValues = RawBsonHelper.getEnumValues(enum class)
+                        for (var componentModel : componentModels) {
+                            if (componentModel.isEnum) {
+                                cob
+                                        .ldc(componentModel.rawTypeClassDesc())
+                                        .invokestatic(rawBsonHelperClassDesc, "getEnumValues",
+                                                MethodTypeDesc.of(CD_byte.arrayType().arrayType(), CD_Class))
+                                        .putstatic(recordCodecClassDesc, componentModel.name + "Values", CD_byte.arrayType().arrayType());
+                            }
+                        }
+
+                        // metrics = new StripedCodecMetrics(record class, description)
+                        if (metrics) {
+                            cob
+                                    .new_(stripedCodecMetricsClassDesc)
+                                    .dup()
+                                    .ldc(clb.constantPool().classEntry(recordClassDesc))
+                                    .ldc(clb.constantPool().stringEntry(getDescription()))
+                                    .invokespecial(stripedCodecMetricsClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_Class, CD_String))
+                                    .putstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc);
+                        }
+                        cob.return_();
+                    });
+        }
+
+        // The description of the codec for its metrics, e.g. "Pair<java.lang.Integer, java.lang.String>" or
+        // "Person[firstName, lastName]" for a projection
+        private String getDescription() {
+            var description = new StringBuilder(recordClass.getName());
+            if (!typeArguments.isEmpty()) {
+                description.append(typeArguments.stream().map(Type::getTypeName)
+                        .collect(Collectors.joining(", ", "<", ">")));
+            }
+            if (decodedComponentNames != null) {
+                description.append(new TreeSet<>(decodedComponentNames));
+            }
+            return description.toString();
+        }
+
+        private void generateGetMetricsMethod(ClassBuilder clb) {
+            clb.withMethodBody("getMetrics", MethodTypeDesc.of(codecMetricsClassDesc), ACC_PUBLIC,
+                    cob -> cob
+                            .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                            .return_(TypeKind.REFERENCE));
+        }
+
+        // Increments one of the counters of the codec's metrics, if it counts them.  The uncounted copy of the codec counts
+        // into StripedCodecMetrics.UNCOUNTED instead, so whether the operation is counted is not checked here.
+        private void generateCount(CodeBuilder cob, String methodName) {
+            if (metrics) {
+                cob
+                        .aload(thisSlot)
+                        .getfield(recordCodecClassDesc, "counters", stripedCodecMetricsClassDesc)
+                        .invokevirtual(stripedCodecMetricsClassDesc, methodName, ConstantDescs.MTD_void);
+            }
+        }
+
+        // Loads whether the operation is counted, and the codec that runs it: this codec, or its uncounted copy
+        private void generateLoadCountingCodec(CodeBuilder cob, int countingSlot, int codecSlot) {
+            var countingLabel = cob.newLabel();
+            cob
+                    .invokestatic(stripedCodecMetricsClassDesc, "isCounting", MethodTypeDesc.of(CD_boolean))
+                    .istore(countingSlot)
+                    .aload(thisSlot)
+                    .iload(countingSlot)
+                    .ifne(countingLabel)
+                    .getfield(recordCodecClassDesc, "uncounted", recordCodecClassDesc)
+                    .labelBinding(countingLabel)
+                    .astore(codecSlot);
+        }
+
         private void generateGetEncoderClassMethod(ClassBuilder clb) {
             clb.withMethodBody("getEncoderClass", MethodTypeDesc.of(CD_Class), ACC_PUBLIC,
                     cob -> cob.
@@ -193,7 +827,6 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
         }
 
         private void generateConstructor(ClassBuilder clb) {
-            var codecClassDesc = ClassDesc.of(Codec.class.getName());
             var codecRegistryClassDesc = ClassDesc.of(CodecRegistry.class.getName());
             var mapClassDesc = ClassDesc.of(java.util.Map.class.getName());
             int codeRegistrySlot = 1;
@@ -213,115 +846,316 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
                                 .aload(typeArgumentsMapSlot)
                                 .putfield(recordCodecClassDesc, "typeArgumentsMap", mapClassDesc);
 
+                        // Store the registry, which the codecs of record components are resolved from by the codec$name
+                        // methods
+                        cob
+                                .aload(thisSlot)
+                                .aload(codeRegistrySlot)
+                                .putfield(recordCodecClassDesc, "codecRegistry", codecRegistryClassDesc);
+
+                        // Resolve the codecs of other components, so that configuration errors are reported by the registry
                         for (var componentModel : componentModels) {
-                            if (!componentModel.isNullable) {
-                                continue;
+                            if (componentModel.hasCodecField() && !componentModel.isCodecResolvedLazily()) {
+                                cob
+                                        .aload(thisSlot)
+                                        .aload(codeRegistrySlot);
+                                generateResolveCodec(cob, componentModel);
+                                cob.putfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc);
                             }
+                        }
+
+                        // Count into the metrics of the codec class, and create the copy that runs the operations that are not
+                        // counted
+                        if (metrics) {
                             cob
                                     .aload(thisSlot)
-                                    .aload(codeRegistrySlot)
-                                    .ldc(ClassDesc.of(componentModel.rawType.getName()));
-                            if (componentModel.typeArguments.isEmpty()) {
-                                cob
-                                        .invokeinterface(codecRegistryClassDesc, "get", MethodTypeDesc.of(codecClassDesc, CD_Class));
-                            } else {
-                                // Get the type arguments from the map: typeArgumentsMap.get(componentName)
+                                    .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                                    .putfield(recordCodecClassDesc, "counters", stripedCodecMetricsClassDesc)
+                                    .aload(thisSlot)
+                                    .new_(recordCodecClassDesc)
+                                    .dup()
+                                    .aload(thisSlot)
+                                    .invokespecial(recordCodecClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, recordCodecClassDesc))
+                                    .putfield(recordCodecClassDesc, "uncounted", recordCodecClassDesc);
+                        }
+                        cob.return_();
+                    });
+            if (metrics) {
+                generateUncountedConstructor(clb);
+            }
+        }
+
+        // Generates the constructor of the uncounted copy of a codec, which shares the codec's fields, except that it counts
+        // into StripedCodecMetrics.UNCOUNTED and is its own uncounted copy
+        private void generateUncountedConstructor(ClassBuilder clb) {
+            var codecRegistryClassDesc = ClassDesc.of(CodecRegistry.class.getName());
+            var mapClassDesc = ClassDesc.of(java.util.Map.class.getName());
+            int codecSlot = 1;
+            clb.withMethodBody(INIT_NAME,
+                    MethodTypeDesc.of(CD_void, recordCodecClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        cob
+                                .aload(thisSlot)
+                                .invokespecial(CD_Object, INIT_NAME, ConstantDescs.MTD_void)
+                                .aload(thisSlot)
+                                .aload(codecSlot)
+                                .getfield(recordCodecClassDesc, "typeArgumentsMap", mapClassDesc)
+                                .putfield(recordCodecClassDesc, "typeArgumentsMap", mapClassDesc)
+                                .aload(thisSlot)
+                                .aload(codecSlot)
+                                .getfield(recordCodecClassDesc, "codecRegistry", codecRegistryClassDesc)
+                                .putfield(recordCodecClassDesc, "codecRegistry", codecRegistryClassDesc);
+                        for (var componentModel : componentModels) {
+                            if (componentModel.hasCodecField()) {
                                 cob
                                         .aload(thisSlot)
-                                        .getfield(recordCodecClassDesc, "typeArgumentsMap", mapClassDesc)
-                                        .ldc(componentModel.name)
-                                        .invokeinterface(mapClassDesc, "get", MethodTypeDesc.of(CD_Object, CD_Object))
-                                        .checkcast(CD_List);
-                                cob.invokeinterface(codecRegistryClassDesc, "get", MethodTypeDesc.of(codecClassDesc, CD_Class, CD_List));
+                                        .aload(codecSlot)
+                                        .getfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
+                                        .putfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc);
                             }
-                            // stack: [this, codec]
-
-                            // Apply @BsonRepresentation if present
-                            if (componentModel.bsonRepresentationType != null) {
-                                var elseLabel = cob.newLabel();
-                                var endLabel = cob.newLabel();
+                        }
+                        cob
+                                .aload(thisSlot)
+                                .getstatic(stripedCodecMetricsClassDesc, "UNCOUNTED", stripedCodecMetricsClassDesc)
+                                .putfield(recordCodecClassDesc, "counters", stripedCodecMetricsClassDesc)
+                                .aload(thisSlot)
+                                .aload(thisSlot)
+                                .putfield(recordCodecClassDesc, "uncounted", recordCodecClassDesc)
+                                .return_();
+                    });
+        }
 
+        /**
+         * Generates a {@code codec$name()} method for every component with a codec from the registry.  The codecs of records,
+         * and of the records in containers, are resolved on first use and cached in the component's codec field, since
+         * resolving them may call back into this provider for a record that refers to itself, and getting a codec therefore
+         * does not get the codec of every record reachable from it.  The field is not volatile: as codecs are immutable and
+         * the registry returns an equivalent codec each time, a thread that does not see another thread's write just resolves
+         * the codec again.  The codecs of other components are resolved by the constructor into final fields, which the
+         * method just returns, so that a missing codec or one that does not support a component's
+         * {@code @BsonRepresentation} is reported when the record's codec is created.
+         */
+        private void generateCodecMethods(ClassBuilder clb) {
+            var codecRegistryClassDesc = ClassDesc.of(CodecRegistry.class.getName());
+            for (var componentModel : componentModels) {
+                if (!componentModel.hasCodecField()) {
+                    continue;
+                }
+                clb.withMethodBody("codec$" + componentModel.name,
+                        MethodTypeDesc.of(codecClassDesc),
+                        ACC_PRIVATE,
+                        cob -> {
+                            if (!componentModel.isCodecResolvedLazily()) {
                                 cob
-                                        // stack: [this, codec]
-                                        .dup()
-                                        // stack: [this, codec, codec]
-                                        .instanceOf(representationConfigurableClassDesc)
-                                        // stack: [this, codec, boolean]
-                                        .ifeq(elseLabel)
-                                        // if branch: codec implements RepresentationConfigurable
-                                        // stack: [this, codec]
-                                        .checkcast(representationConfigurableClassDesc)
-                                        // stack: [this, RepresentationConfigurable]
-                                        .getstatic(bsonTypeClassDesc, componentModel.bsonRepresentationType.name(), bsonTypeClassDesc)
-                                        // stack: [this, RepresentationConfigurable, BsonType]
-                                        .invokeinterface(representationConfigurableClassDesc, "withRepresentation",
-                                                MethodTypeDesc.of(codecClassDesc, bsonTypeClassDesc))
-                                        // stack: [this, Codec]
-                                        .goto_(endLabel)
-                                        // else branch: codec does not implement RepresentationConfigurable
-                                        .labelBinding(elseLabel)
-                                        // stack: [this, codec]
-                                        .pop()
-                                        // stack: [this]
-                                        .pop()
-                                        // stack: []
-                                        .new_(codecConfigurationExceptionClassDesc)
-                                        // stack: [exception]
-                                        .dup()
-                                        // stack: [exception, exception]
-                                        .ldc(format("Codec for %s must implement RepresentationConfigurable to support BsonRepresentation",
-                                                componentModel.rawType.getName()))
-                                        // stack: [exception, exception, message]
-                                        .invokespecial(codecConfigurationExceptionClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
-                                        // stack: [exception]
-                                        .athrow()
-                                        .labelBinding(endLabel);
-                                // stack: [this, codec]
+                                        .aload(thisSlot)
+                                        .getfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
+                                        .areturn();
+                                return;
                             }
-
+                            var resolveLabel = cob.newLabel();
+                            cob
+                                    .aload(thisSlot)
+                                    .getfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
+                                    .dup()
+                                    .ifnull(resolveLabel)
+                                    .areturn()
+                                    .labelBinding(resolveLabel)
+                                    .pop()
+                                    .aload(thisSlot)
+                                    .getfield(recordCodecClassDesc, "codecRegistry", codecRegistryClassDesc);
+                            generateResolveCodec(cob, componentModel);
                             cob
-                                    .putfield(recordCodecClassDesc,
-                                            componentModel.name + "Codec",
-                                            ClassDesc.of(Codec.class.getName()));
+                                    .dup()
+                                    .aload(thisSlot)
+                                    .swap()
+                                    // stack: [codec, this, codec]
+                                    .putfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
+                                    .areturn();
+                        });
+            }
+        }
+
+        // Gets the codec of a component from the registry on the stack, and applies the component's @BsonRepresentation
+        private void generateResolveCodec(CodeBuilder cob, ComponentModel componentModel) {
+            var codecRegistryClassDesc = ClassDesc.of(CodecRegistry.class.getName());
+            var mapClassDesc = ClassDesc.of(java.util.Map.class.getName());
+            // stack: [registry]
+            if (componentModel.isContainer()) {
+                // The codec of the records in the container
+                cob
+                        .ldc(ClassDesc.of(componentModel.elementType.getName()))
+                        .invokeinterface(codecRegistryClassDesc, "get", MethodTypeDesc.of(codecClassDesc, CD_Class));
+            } else if (componentModel.typeArguments.isEmpty()) {
+                cob
+                        .ldc(componentModel.rawTypeClassDesc())
+                        .invokeinterface(codecRegistryClassDesc, "get", MethodTypeDesc.of(codecClassDesc, CD_Class));
+            } else {
+                // Get the type arguments from the map: typeArgumentsMap.get(componentName)
+                cob
+                        .ldc(componentModel.rawTypeClassDesc())
+                        .aload(thisSlot)
+                        .getfield(recordCodecClassDesc, "typeArgumentsMap", mapClassDesc)
+                        .ldc(componentModel.name)
+                        .invokeinterface(mapClassDesc, "get", MethodTypeDesc.of(CD_Object, CD_Object))
+                        .checkcast(CD_List)
+                        .invokeinterface(codecRegistryClassDesc, "get", MethodTypeDesc.of(codecClassDesc, CD_Class, CD_List));
+            }
+            // stack: [codec]
+
+            // Apply @BsonRepresentation if present
+            if (componentModel.bsonRepresentationType != null) {
+                var elseLabel = cob.newLabel();
+                var endLabel = cob.newLabel();
+
+                cob
+                        // stack: [codec]
+                        .dup()
+                        // stack: [codec, codec]
+                        .instanceOf(representationConfigurableClassDesc)
+                        // stack: [codec, boolean]
+                        .ifeq(elseLabel)
+                        // if branch: codec implements RepresentationConfigurable
+                        // stack: [codec]
+                        .checkcast(representationConfigurableClassDesc)
+                        // stack: [RepresentationConfigurable]
+                        .getstatic(bsonTypeClassDesc, componentModel.bsonRepresentationType.name(), bsonTypeClassDesc)
+                        // stack: [RepresentationConfigurable, BsonType]
+                        .invokeinterface(representationConfigurableClassDesc, "withRepresentation",
+                                MethodTypeDesc.of(codecClassDesc, bsonTypeClassDesc))
+                        // stack: [Codec]
+                        .goto_(endLabel)
+                        // else branch: codec does not implement RepresentationConfigurable
+                        .labelBinding(elseLabel)
+                        // stack: [codec]
+                        .pop()
+                        // stack: []
+                        .new_(codecConfigurationExceptionClassDesc)
+                        // stack: [exception]
+                        .dup()
+                        // stack: [exception, exception]
+                        .ldc(format("Codec for %s must implement RepresentationConfigurable to support BsonRepresentation",
+                                componentModel.rawType.getName()))
+                        // stack: [exception, exception, message]
+                        .invokespecial(codecConfigurationExceptionClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+                        // stack: [exception]
+                        .athrow()
+                        .labelBinding(endLabel);
+                // stack: [codec]
+            }
+        }
 
+        /**
+         * Generates a public method that delegates to the private method of the same name suffixed with {@code 0}, which
+         * implements it, and reports the call as a {@code CodecOperationEvent} if it takes longer than the event's threshold.
+         * If the codec counts metrics, the method counts the document too, and for decodes, counts failures before
+         * rethrowing them.  Whether the operation is counted is checked once, and if it is not, the private method is called
+         * on the uncounted copy of the codec, so that nothing is counted while the document is encoded or decoded.  The first
+         * parameter of the method is the reader, writer or buffer that it reads from or writes to.
+         */
+        private void generateWrapperMethod(ClassBuilder clb, String name, MethodTypeDesc methodTypeDesc) {
+            var isDecode = name.equals("decode");
+            var eventSlot = methodTypeDesc.parameterCount() + 1;
+            var startPositionSlot = eventSlot + 1;
+            var startTimeSlot = startPositionSlot + 1;
+            var countingSlot = startTimeSlot + 2;
+            var codecSlot = countingSlot + 1;
+            clb.withMethodBody(name,
+                    methodTypeDesc,
+                    ACC_PUBLIC,
+                    cob -> {
+                        if (metrics) {
+                            generateLoadCountingCodec(cob, countingSlot, codecSlot);
+                        }
+                        cob
+                                .aload(1)
+                                .invokestatic(codecOperationEventClassDesc, "start", MethodTypeDesc.of(codecOperationEventClassDesc, CD_Object))
+                                .astore(eventSlot);
+                        if (metrics) {
+                            cob
+                                    .aload(1)
+                                    .invokestatic(rawBsonHelperClassDesc, "getPosition", MethodTypeDesc.of(CD_int, CD_Object))
+                                    .istore(startPositionSlot)
+                                    .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                                    .invokevirtual(stripedCodecMetricsClassDesc, "startTime", MethodTypeDesc.of(CD_long))
+                                    .lstore(startTimeSlot);
+                        }
+                        var tryStartLabel = cob.newLabel();
+                        var tryEndLabel = cob.newLabel();
+                        cob
+                                .labelBinding(tryStartLabel)
+                                .aload(metrics ? codecSlot : thisSlot);
+                        for (int i = 1; i <= methodTypeDesc.parameterCount(); i++) {
+                            cob.aload(i);
+                        }
+                        cob
+                                .invokevirtual(recordCodecClassDesc, name + "0", methodTypeDesc)
+                                .labelBinding(tryEndLabel);
+                        // the result, if any, stays on the stack
+                        if (metrics) {
+                            var notCountingLabel = cob.newLabel();
+                            cob
+                                    .iload(countingSlot)
+                                    .ifeq(notCountingLabel)
+                                    .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                                    .aload(1)
+                                    .iload(startPositionSlot)
+                                    .lload(startTimeSlot)
+                                    .invokevirtual(stripedCodecMetricsClassDesc, isDecode ? "decoded" : "encoded",
+                                            MethodTypeDesc.of(CD_void, CD_Object, CD_int, CD_long))
+                                    .labelBinding(notCountingLabel)
+                                    .aload(eventSlot)
+                                    .aload(1)
+                                    .loadConstant(recordClassDesc)
+                                    .loadConstant(name)
+                                    .iload(countingSlot)
+                                    .invokevirtual(codecOperationEventClassDesc, "finish",
+                                            MethodTypeDesc.of(CD_void, CD_Object, CD_Class, CD_String, CD_boolean));
+                        } else {
+                            cob
+                                    .aload(eventSlot)
+                                    .aload(1)
+                                    .loadConstant(recordClassDesc)
+                                    .loadConstant(name)
+                                    .invokevirtual(codecOperationEventClassDesc, "finish",
+                                            MethodTypeDesc.of(CD_void, CD_Object, CD_Class, CD_String));
+                        }
+                        cob.return_(TypeKind.from(methodTypeDesc.returnType()));
+                        if (metrics && isDecode) {
+                            generateCountDecodeFailures(cob, tryStartLabel, tryEndLabel, codecSlot);
                         }
-                        cob.return_();
                     });
         }
 
+        // Generates a handler, at an unreachable point of the code, that counts the exceptions thrown between the labels as
+        // decode failures of the codec in the given slot, which is this codec or its uncounted copy, and rethrows them
+        private void generateCountDecodeFailures(CodeBuilder cob, Label tryStartLabel, Label tryEndLabel, int codecSlot) {
+            var handlerLabel = cob.newLabel();
+            cob
+                    .labelBinding(handlerLabel)
+                    // stack: [exception]
+                    .aload(codecSlot)
+                    .getfield(recordCodecClassDesc, "counters", stripedCodecMetricsClassDesc)
+                    .invokevirtual(stripedCodecMetricsClassDesc, "decodeFailed", ConstantDescs.MTD_void)
+                    .athrow()
+                    .exceptionCatchAll(tryStartLabel, tryEndLabel, handlerLabel);
+        }
+
         private void generateEncodeMethod(ClassBuilder clb) {
             var methodTypeDesc = MethodTypeDesc.of(CD_void, bsonWriterClassDesc, recordClassDesc, encoderContextClassDesc);
             int writerSlot = 1;
             int recordClassSlot = 2;
             int encoderContextSlot = 3;
             int componentValueSlot = 4;
-            clb.withMethodBody("encode",
+            clb.withMethodBody("encode0",
                     methodTypeDesc,
-                    ACC_PUBLIC,
+                    ACC_PRIVATE,
                     cob -> {
                         cob
                                 .aload(writerSlot)
                                 .invokeinterface(bsonWriterClassDesc, "writeStartDocument", MethodTypeDesc.of(CD_void));
 
-                        // Find the _id component (if any) and write it first
-                        ComponentModel idComponent = null;
-                        for (var componentModel : componentModels) {
-                            if ("_id".equals(componentModel.fieldName)) {
-                                idComponent = componentModel;
-                                break;
-                            }
-                        }
-
-                        // Write _id first if present
-                        if (idComponent != null) {
-                            generateEncodeComponent(clb, cob, idComponent, writerSlot, recordClassSlot, encoderContextSlot, componentValueSlot);
-                        }
-
-                        // Write remaining components
-                        for (var componentModel : componentModels) {
-                            if (componentModel == idComponent) {
-                                continue; // Skip _id, already written
-                            }
+                        for (var componentModel : encodedComponentModels) {
                             generateEncodeComponent(clb, cob, componentModel, writerSlot, recordClassSlot, encoderContextSlot, componentValueSlot);
                         }
 
@@ -330,6 +1164,7 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
                                 .invokeinterface(bsonWriterClassDesc, "writeEndDocument", MethodTypeDesc.of(CD_void))
                                 .return_();
                     });
+            generateWrapperMethod(clb, "encode", methodTypeDesc);
 
             // generate bridge method
             clb.withMethodBody("encode",
@@ -346,372 +1181,1989 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             );
         }
 
-        private void generateEncodeComponent(ClassBuilder clb, CodeBuilder cob, ComponentModel componentModel,
-                                             int writerSlot, int recordClassSlot, int encoderContextSlot, int componentValueSlot) {
-            var l0 = cob.newLabel();
-            var recordComponentMtd = MethodTypeDesc.of(componentModel.classDesc);
+        /**
+         * Generates {@code encodeTo(OutputBuffer, T)} from {@link GeneratedRecordCodec}, which writes the pre-encoded header
+         * of each element and then its value straight to the buffer, and back-patches the length of the document.  If the
+         * record has components with a codec from the registry, a {@code BsonBinaryWriter} over the same buffer writes the
+         * start and end of the document as well as the elements of those components.
+         */
+        private void generateEncodeToMethod(ClassBuilder clb) {
+            var methodTypeDesc = MethodTypeDesc.of(CD_void, outputBufferClassDesc, recordClassDesc);
+            var usesWriter = componentModels.stream().anyMatch(ComponentModel::requiresCodec);
+            clb.withMethodBody("encodeTo0",
+                    methodTypeDesc,
+                    ACC_PRIVATE,
+                    cob -> {
+                        var bufferSlot = 1;
+                        var recordSlot = 2;
+                        var startOrWriterSlot = 3;
+                        var componentValueSlot = 4;
 
-            cob
-                    .aload(recordClassSlot)
-                    .invokevirtual(recordClassDesc, componentModel.name, recordComponentMtd);
+                        if (usesWriter) {
+                            cob
+                                    .new_(bsonBinaryWriterClassDesc)
+                                    .dup()
+                                    .aload(bufferSlot)
+                                    .invokespecial(bsonBinaryWriterClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, bsonOutputClassDesc))
+                                    .astore(startOrWriterSlot)
+                                    .aload(startOrWriterSlot)
+                                    .invokeinterface(bsonWriterClassDesc, "writeStartDocument", MethodTypeDesc.of(CD_void));
+                        } else {
+                            // the length of the document is back-patched at the end
+                            cob
+                                    .aload(bufferSlot)
+                                    .invokevirtual(outputBufferClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                    .istore(startOrWriterSlot)
+                                    .aload(bufferSlot)
+                                    .iconst_0()
+                                    .invokevirtual(outputBufferClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_int));
+                        }
 
-            if (componentModel.isNullable) {
-                cob.astore(componentValueSlot);
-            } else if (componentModel.classDesc.equals(CD_boolean)
-                    || componentModel.classDesc.equals(CD_byte)
-                    || componentModel.classDesc.equals(CD_short)
-                    || componentModel.classDesc.equals(CD_int)
-                    || componentModel.classDesc.equals(CD_char)) {
-                cob.istore(componentValueSlot);
-            } else if (componentModel.classDesc.equals(CD_long)) {
-                cob.lstore(componentValueSlot);
-            } else if (componentModel.classDesc.equals(CD_float)) {
-                cob.fstore(componentValueSlot);
-            } else if (componentModel.classDesc.equals(CD_double)) {
-                cob.dstore(componentValueSlot);
+                        for (var componentModel : encodedComponentModels) {
+                            var nullLabel = cob.newLabel();
+                            generateLoadComponentValue(cob, componentModel, recordSlot, componentValueSlot, nullLabel);
+                            if (componentModel.isContainer()) {
+                                cob
+                                        .aload(startOrWriterSlot)
+                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                                        .invokeinterface(bsonWriterClassDesc, "writeName", MethodTypeDesc.of(CD_void, CD_String));
+                                generateEncodeContainer(cob, componentModel, startOrWriterSlot, componentValueSlot);
+                            } else if (componentModel.requiresCodec()) {
+                                var writerLabel = cob.newLabel();
+                                if (componentModel.isRecord) {
+                                    // A nested record with a generated codec is encoded to the buffer by that codec
+                                    generateLoadGeneratedRecordCodec(cob, componentModel, writerLabel);
+                                    cob
+                                            .aload(bufferSlot)
+                                            .getstatic(recordCodecClassDesc, componentModel.name + "Header", CD_byte.arrayType())
+                                            .invokevirtual(outputBufferClassDesc, "writeBytes", MethodTypeDesc.of(CD_void, CD_byte.arrayType()))
+                                            .aload(bufferSlot)
+                                            .aload(componentValueSlot);
+                                    generateInvokeCodec(cob, generatedRecordCodecClassDesc, "encodeTo",
+                                            MethodTypeDesc.of(CD_void, outputBufferClassDesc, CD_Object));
+                                    cob
+                                            .goto_(nullLabel);
+                                } else if (componentModel.isEnum) {
+                                    // The name of the constant is written from the table of encoded names
+                                    generateIfNotEnumCodec(cob, componentModel, writerLabel);
+                                    cob
+                                            .aload(bufferSlot)
+                                            .getstatic(recordCodecClassDesc, componentModel.name + "Header", CD_byte.arrayType())
+                                            .invokevirtual(outputBufferClassDesc, "writeBytes", MethodTypeDesc.of(CD_void, CD_byte.arrayType()))
+                                            .aload(bufferSlot);
+                                    generateLoadEnumValue(cob, componentModel, componentValueSlot);
+                                    cob
+                                            .invokevirtual(outputBufferClassDesc, "writeBytes", MethodTypeDesc.of(CD_void, CD_byte.arrayType()))
+                                            .goto_(nullLabel);
+                                }
+                                cob
+                                        .labelBinding(writerLabel)
+                                        .aload(startOrWriterSlot)
+                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                                        .invokeinterface(bsonWriterClassDesc, "writeName", MethodTypeDesc.of(CD_void, CD_String));
+                                generateEncodeWithCodec(cob, componentModel, startOrWriterSlot, componentValueSlot,
+                                        c -> c.getstatic(rawBsonHelperClassDesc, "ENCODER_CONTEXT", encoderContextClassDesc));
+                            } else {
+                                cob
+                                        .aload(bufferSlot)
+                                        .getstatic(recordCodecClassDesc, componentModel.name + "Header", CD_byte.arrayType())
+                                        .invokevirtual(outputBufferClassDesc, "writeBytes", MethodTypeDesc.of(CD_void, CD_byte.arrayType()))
+                                        .aload(bufferSlot);
+                                generateWriteRawValue(cob, componentModel, componentValueSlot);
+                            }
+                            if (componentModel.isNullable) {
+                                cob.labelBinding(nullLabel);
+                            }
+                        }
+
+                        if (usesWriter) {
+                            cob
+                                    .aload(startOrWriterSlot)
+                                    .invokeinterface(bsonWriterClassDesc, "writeEndDocument", MethodTypeDesc.of(CD_void));
+                        } else {
+                            // buffer.writeInt32(start, buffer.getPosition() + 1 - start), then the terminating null byte
+                            cob
+                                    .aload(bufferSlot)
+                                    .iload(startOrWriterSlot)
+                                    .aload(bufferSlot)
+                                    .invokevirtual(outputBufferClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                    .iconst_1()
+                                    .iadd()
+                                    .iload(startOrWriterSlot)
+                                    .isub()
+                                    .invokevirtual(outputBufferClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_int, CD_int))
+                                    .aload(bufferSlot)
+                                    .iconst_0()
+                                    .invokevirtual(outputBufferClassDesc, "writeByte", MethodTypeDesc.of(CD_void, CD_int));
+                        }
+                        cob.return_();
+                    });
+            generateWrapperMethod(clb, "encodeTo", methodTypeDesc);
+
+            // generate bridge method
+            clb.withMethodBody("encodeTo",
+                    MethodTypeDesc.of(CD_void, outputBufferClassDesc, CD_Object),
+                    ACC_PUBLIC,
+                    cob -> cob
+                            .aload(0)
+                            .aload(1)
+                            .aload(2)
+                            .checkcast(recordClassDesc)
+                            .invokevirtual(recordCodecClassDesc, "encodeTo", methodTypeDesc)
+                            .return_()
+            );
+        }
+
+        /**
+         * Generates {@code sizeOf(T)} from {@link GeneratedRecordCodec}.  The sizes of the document's length and terminating
+         * null byte, of the headers of all elements, and of fixed-size values of non-null components are summed when the
+         * class is generated, so at runtime only strings and components with a codec from the registry are measured.
+         */
+        private void generateSizeOfMethod(ClassBuilder clb) {
+            var methodTypeDesc = MethodTypeDesc.of(CD_int, recordClassDesc);
+            clb.withMethodBody("sizeOf",
+                    methodTypeDesc,
+                    ACC_PUBLIC,
+                    cob -> {
+                        var recordSlot = 1;
+                        var sizeSlot = 2;
+                        var componentValueSlot = 3;
+
+                        // the length of the document and its terminating null byte
+                        int fixedSize = 5;
+                        for (var componentModel : encodedComponentModels) {
+                            if (!componentModel.isNullable) {
+                                fixedSize += getElementHeaderSize(componentModel) + getFixedValueSize(componentModel);
+                            }
+                        }
+                        cob
+                                .loadConstant(fixedSize)
+                                .istore(sizeSlot);
+
+                        for (var componentModel : encodedComponentModels) {
+                            if (!componentModel.isNullable) {
+                                if (componentModel.classDesc.equals(CD_char)) {
+                                    generateLoadComponentValue(cob, componentModel, recordSlot, componentValueSlot, null);
+                                    cob
+                                            .iload(sizeSlot)
+                                            .iload(componentValueSlot)
+                                            .invokestatic(rawBsonHelperClassDesc, "getStringValueSize", MethodTypeDesc.of(CD_int, CD_char))
+                                            .iadd()
+                                            .istore(sizeSlot);
+                                }
+                                continue;
+                            }
+                            var nullLabel = cob.newLabel();
+                            generateLoadComponentValue(cob, componentModel, recordSlot, componentValueSlot, nullLabel);
+                            cob
+                                    .iload(sizeSlot)
+                                    .loadConstant(getElementHeaderSize(componentModel));
+                            if (componentModel.isContainer()) {
+                                cob
+                                        .aload(thisSlot)
+                                        .aload(componentValueSlot)
+                                        .invokevirtual(recordCodecClassDesc, "sizeOf$" + componentModel.name + "$0",
+                                                MethodTypeDesc.of(CD_int, componentModel.containerClassDesc(0)));
+                            } else if (componentModel.requiresCodec()) {
+                                var valueSizeLabel = cob.newLabel();
+                                var addLabel = cob.newLabel();
+                                if (componentModel.isRecord) {
+                                    // A nested record with a generated codec is measured by that codec
+                                    generateLoadGeneratedRecordCodec(cob, componentModel, valueSizeLabel);
+                                    cob
+                                            .aload(componentValueSlot);
+                                    generateInvokeCodec(cob, generatedRecordCodecClassDesc, "sizeOf", MethodTypeDesc.of(CD_int, CD_Object));
+                                    cob
+                                            .goto_(addLabel);
+                                } else if (componentModel.isEnum) {
+                                    generateIfNotEnumCodec(cob, componentModel, valueSizeLabel);
+                                    generateLoadEnumValue(cob, componentModel, componentValueSlot);
+                                    cob
+                                            .arraylength()
+                                            .goto_(addLabel);
+                                }
+                                cob
+                                        .labelBinding(valueSizeLabel)
+                                        .aload(thisSlot)
+                                        .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                                        .aload(componentValueSlot)
+                                        .invokestatic(rawBsonHelperClassDesc, "getValueSize", MethodTypeDesc.of(CD_int, encoderClassDesc, CD_Object))
+                                        .labelBinding(addLabel);
+                            } else if (componentModel.isPrimitiveArray) {
+                                cob
+                                        .aload(componentValueSlot)
+                                        .invokestatic(primitiveArraysClassDesc, "getValueSize", MethodTypeDesc.of(CD_int, componentModel.rawTypeClassDesc()));
+                            } else if (componentModel.isString && componentModel.bsonRepresentationType != BsonType.OBJECT_ID) {
+                                cob
+                                        .aload(componentValueSlot)
+                                        .invokestatic(rawBsonHelperClassDesc, "getStringValueSize", MethodTypeDesc.of(CD_int, CD_String));
+                            } else if (componentModel.unboxedClassDesc != null && componentModel.unboxedClassDesc.equals(CD_char)) {
+                                cob.aload(componentValueSlot);
+                                generateUnbox(cob, componentModel);
+                                cob.invokestatic(rawBsonHelperClassDesc, "getStringValueSize", MethodTypeDesc.of(CD_int, CD_char));
+                            } else {
+                                cob.loadConstant(getFixedValueSize(componentModel));
+                            }
+                            cob
+                                    .iadd()
+                                    .iadd()
+                                    .istore(sizeSlot)
+                                    .labelBinding(nullLabel);
+                        }
+
+                        cob
+                                .iload(sizeSlot)
+                                .ireturn();
+                    });
+
+            // generate bridge method
+            clb.withMethodBody("sizeOf",
+                    MethodTypeDesc.of(CD_int, CD_Object),
+                    ACC_PUBLIC,
+                    cob -> cob
+                            .aload(0)
+                            .aload(1)
+                            .checkcast(recordClassDesc)
+                            .invokevirtual(recordCodecClassDesc, "sizeOf", methodTypeDesc)
+                            .ireturn()
+            );
+        }
+
+        // The size of the type and name of a component's element, as encoded by RawBsonHelper.getElementHeader
+        private static int getElementHeaderSize(ComponentModel componentModel) {
+            return componentModel.fieldName.getBytes(UTF_8).length + 2;
+        }
+
+        // The size of a value written for a primitive type other than char
+        private static int getPrimitiveValueSize(ClassDesc primitiveClassDesc) {
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                return 1;
+            } else if (primitiveClassDesc.equals(CD_long) || primitiveClassDesc.equals(CD_float) || primitiveClassDesc.equals(CD_double)) {
+                return 8;
             } else {
-                throw new UnsupportedOperationException(componentModel.classDesc.toString());
+                return 4;
             }
-            // stack: []
-            if (componentModel.isNullable) {
+        }
+
+        // The size of the value of an inline component whose values all have the same size, or 0 if the size varies
+        private static int getFixedValueSize(ComponentModel componentModel) {
+            if (componentModel.requiresCodec()) {
+                return 0;
+            }
+            return switch (getEncodedBsonType(componentModel)) {
+                case BOOLEAN -> 1;
+                case INT32 -> 4;
+                case INT64, DOUBLE -> 8;
+                case OBJECT_ID -> 12;
+                default -> 0;
+            };
+        }
+
+        // The BSON type of the elements written for an inline, record or enum component
+        private static BsonType getEncodedBsonType(ComponentModel componentModel) {
+            if (componentModel.isRecord) {
+                return BsonType.DOCUMENT;
+            }
+            if (componentModel.isEnum) {
+                return BsonType.STRING;
+            }
+            if (componentModel.isPrimitiveArray) {
+                return componentModel.rawType == byte[].class ? BsonType.BINARY : BsonType.ARRAY;
+            }
+            if (componentModel.isString) {
+                return componentModel.bsonRepresentationType == BsonType.OBJECT_ID ? BsonType.OBJECT_ID : BsonType.STRING;
+            }
+            var primitiveClassDesc = componentModel.unboxedClassDesc != null ? componentModel.unboxedClassDesc : componentModel.classDesc;
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                return BsonType.BOOLEAN;
+            } else if (primitiveClassDesc.equals(CD_byte)
+                    || primitiveClassDesc.equals(CD_short)
+                    || primitiveClassDesc.equals(CD_int)) {
+                return BsonType.INT32;
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                return BsonType.INT64;
+            } else if (primitiveClassDesc.equals(CD_float) || primitiveClassDesc.equals(CD_double)) {
+                return BsonType.DOUBLE;
+            } else if (primitiveClassDesc.equals(CD_char)) {
+                return BsonType.STRING;
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
+            }
+        }
+
+        // stack: [buffer] -> [], writing the value of an inline component in the slot
+        private static void generateWriteRawValue(CodeBuilder cob, ComponentModel componentModel, int componentValueSlot) {
+            if (componentModel.isPrimitiveArray) {
                 cob
                         .aload(componentValueSlot)
-                        .ifnull(l0);
+                        .invokestatic(primitiveArraysClassDesc, componentModel.rawType == byte[].class ? "writeBinary" : "writeArray",
+                                MethodTypeDesc.of(CD_void, bsonOutputClassDesc, componentModel.rawTypeClassDesc()));
+                return;
             }
-            cob
-                    .aload(writerSlot)
-                    .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
-                    // stack: [writer, field name]
-                    .invokeinterface(bsonWriterClassDesc, "writeName",
-                            MethodTypeDesc.of(CD_void, CD_String));
-            // stack []
-            if (componentModel.isNullable) {
+            if (componentModel.isString) {
+                if (componentModel.bsonRepresentationType == BsonType.OBJECT_ID) {
+                    cob
+                            .new_(objectIdClassDesc)
+                            .dup()
+                            .aload(componentValueSlot)
+                            .invokespecial(objectIdClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+                            .invokevirtual(outputBufferClassDesc, "writeObjectId", MethodTypeDesc.of(CD_void, objectIdClassDesc));
+                } else {
+                    cob
+                            .aload(componentValueSlot)
+                            .invokevirtual(outputBufferClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String));
+                }
+                return;
+            }
+            ClassDesc primitiveClassDesc;
+            if (componentModel.unboxedClassDesc != null) {
+                primitiveClassDesc = componentModel.unboxedClassDesc;
+                cob.aload(componentValueSlot);
+                generateUnbox(cob, componentModel);
+            } else {
+                primitiveClassDesc = componentModel.classDesc;
+                generateLoadPrimitive(cob, primitiveClassDesc, componentValueSlot);
+            }
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                cob.invokevirtual(outputBufferClassDesc, "writeByte", MethodTypeDesc.of(CD_void, CD_int));
+            } else if (primitiveClassDesc.equals(CD_byte)
+                    || primitiveClassDesc.equals(CD_short)
+                    || primitiveClassDesc.equals(CD_int)) {
+                cob.invokevirtual(outputBufferClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_int));
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                cob.invokevirtual(outputBufferClassDesc, "writeInt64", MethodTypeDesc.of(CD_void, CD_long));
+            } else if (primitiveClassDesc.equals(CD_float)) {
                 cob
-                        .aload(encoderContextSlot)
-                        .aload(thisSlot)
-                        .getfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
-                        .aload(writerSlot)
-                        .aload(componentValueSlot)
-                        // stack: [encoder context, encoder, writer, component value reference]
-                        .invokevirtual(encoderContextClassDesc, "encodeWithChildContext",
-                                MethodTypeDesc.of(CD_void, encoderClassDesc, bsonWriterClassDesc, CD_Object));
-            } else if (componentModel.classDesc.equals(CD_boolean)) {
+                        .f2d()
+                        .invokevirtual(outputBufferClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.invokevirtual(outputBufferClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
+            } else if (primitiveClassDesc.equals(CD_char)) {
                 cob
-                        .aload(writerSlot)
-                        .iload(componentValueSlot)
-                        .invokeinterface(bsonWriterClassDesc, "writeBoolean", MethodTypeDesc.of(CD_void, CD_boolean));
-            } else if (componentModel.classDesc.equals(CD_byte)
-                    || componentModel.classDesc.equals(CD_short)
-                    || componentModel.classDesc.equals(CD_int)) {
+                        .invokestatic(CD_String, "valueOf", MethodTypeDesc.of(CD_String, CD_char))
+                        .invokevirtual(outputBufferClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String));
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
+            }
+        }
+
+        private void generateEncodeComponent(ClassBuilder clb, CodeBuilder cob, ComponentModel componentModel,
+                                             int writerSlot, int recordClassSlot, int encoderContextSlot, int componentValueSlot) {
+            var l0 = cob.newLabel();
+            generateLoadComponentValue(cob, componentModel, recordClassSlot, componentValueSlot, l0);
+            // Components written inline use the BsonWriter methods that take the field name as well as the value
+            if (componentModel.isString) {
                 cob
                         .aload(writerSlot)
-                        .iload(componentValueSlot)
-                        .invokeinterface(bsonWriterClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_int));
-            } else if (componentModel.classDesc.equals(CD_long)) {
+                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName));
+                if (componentModel.bsonRepresentationType == BsonType.OBJECT_ID) {
+                    cob
+                            .new_(objectIdClassDesc)
+                            .dup()
+                            .aload(componentValueSlot)
+                            // stack: [writer, field name, object id, object id, component value]
+                            .invokespecial(objectIdClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+                            .invokeinterface(bsonWriterClassDesc, "writeObjectId", MethodTypeDesc.of(CD_void, CD_String, objectIdClassDesc));
+                } else {
+                    cob
+                            .aload(componentValueSlot)
+                            .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String, CD_String));
+                }
+            } else if (componentModel.unboxedClassDesc != null) {
                 cob
                         .aload(writerSlot)
-                        .lload(componentValueSlot)
-                        .invokeinterface(bsonWriterClassDesc, "writeInt64", MethodTypeDesc.of(CD_void, CD_long));
-            } else if (componentModel.classDesc.equals(CD_float)) {
+                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                        .aload(componentValueSlot);
+                generateUnbox(cob, componentModel);
+                generateWritePrimitive(cob, componentModel.unboxedClassDesc);
+            } else if (componentModel.isPrimitiveArray) {
                 cob
                         .aload(writerSlot)
-                        .fload(componentValueSlot)
-                        .f2d()
-                        .invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
-            } else if (componentModel.classDesc.equals(CD_double)) {
+                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                        .invokeinterface(bsonWriterClassDesc, "writeName", MethodTypeDesc.of(CD_void, CD_String))
+                        .aload(writerSlot)
+                        .aload(componentValueSlot)
+                        .invokestatic(primitiveArraysClassDesc, componentModel.rawType == byte[].class ? "writeBinary" : "writeArray",
+                                MethodTypeDesc.of(CD_void, bsonWriterClassDesc, componentModel.rawTypeClassDesc()));
+            } else if (componentModel.isNullable) {
+                if (componentModel.isEnum) {
+                    // As EnumCodec does, write the name of the constant
+                    var codecLabel = cob.newLabel();
+                    generateIfNotEnumCodec(cob, componentModel, codecLabel);
+                    cob
+                            .aload(writerSlot)
+                            .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                            .aload(componentValueSlot)
+                            .invokevirtual(CD_Enum, "name", MethodTypeDesc.of(CD_String))
+                            .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String, CD_String))
+                            .goto_(l0)
+                            .labelBinding(codecLabel);
+                }
                 cob
                         .aload(writerSlot)
-                        .dload(componentValueSlot)
-                        .invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
-            } else if (componentModel.classDesc.equals(CD_char)) {
+                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                        // stack: [writer, field name]
+                        .invokeinterface(bsonWriterClassDesc, "writeName",
+                                MethodTypeDesc.of(CD_void, CD_String));
+                // stack: []
+                if (componentModel.isContainer()) {
+                    generateEncodeContainer(cob, componentModel, writerSlot, componentValueSlot);
+                } else {
+                    generateEncodeWithCodec(cob, componentModel, writerSlot, componentValueSlot,
+                            c -> c
+                                    .aload(encoderContextSlot)
+                                    .invokevirtual(encoderContextClassDesc, "getChildContext", MethodTypeDesc.of(encoderContextClassDesc)));
+                }
+            } else {
                 cob
                         .aload(writerSlot)
-                        .iload(componentValueSlot)
-                        .invokestatic(CD_String, "valueOf", MethodTypeDesc.of(CD_String, CD_char))
-                        .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String));
+                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName));
+                generateLoadPrimitive(cob, componentModel.classDesc, componentValueSlot);
+                generateWritePrimitive(cob, componentModel.classDesc);
+            }
+            // stack: []
+            if (componentModel.isNullable) {
+                cob
+                        .labelBinding(l0);
+            }
+        }
+
+        /**
+         * Encodes the value in the slot with the component's codec, as {@code EncoderContext.encodeWithChildContext} does.
+         * Calling the codec from the generated class rather than from that method gives each component its own call site,
+         * which is bound to the class of the codec and so can be inlined.
+         */
+        private void generateEncodeWithCodec(CodeBuilder cob, ComponentModel componentModel, int writerSlot, int componentValueSlot,
+                                             Consumer<CodeBuilder> childEncoderContextLoader) {
+            cob
+                    .aload(thisSlot)
+                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                    .aload(writerSlot)
+                    .aload(componentValueSlot);
+            childEncoderContextLoader.accept(cob);
+            // stack: [codec, writer, component value, child encoder context]
+            generateInvokeCodec(cob, codecClassDesc, "encode",
+                    MethodTypeDesc.of(CD_void, bsonWriterClassDesc, CD_Object, encoderContextClassDesc));
+        }
+
+        /**
+         * Calls a method of the codec on the stack through a {@link CodecCallSite}, which binds the call to the class of the
+         * first codec that it calls.  Generated codec classes are hidden, so they cannot call each other with
+         * {@code invokevirtual}.
+         */
+        // stack: [codec, arguments] -> [result]
+        private void generateInvokeCodec(CodeBuilder cob, ClassDesc interfaceClassDesc, String name, MethodTypeDesc methodTypeDesc) {
+            cob.invokedynamic(DynamicCallSiteDesc.of(codecCallSiteBootstrap, name,
+                    methodTypeDesc.insertParameterTypes(0, interfaceClassDesc)));
+        }
+
+        /**
+         * Loads the codec of a record component as a {@link GeneratedRecordCodec}, or jumps to the label if the registry
+         * provided a different codec for the record.
+         */
+        // stack: [] -> [generated record codec]
+        private void generateLoadGeneratedRecordCodec(CodeBuilder cob, ComponentModel componentModel, Label otherCodecLabel) {
+            cob
+                    .aload(thisSlot)
+                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                    .instanceOf(generatedRecordCodecClassDesc)
+                    .ifeq(otherCodecLabel)
+                    .aload(thisSlot)
+                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                    .checkcast(generatedRecordCodecClassDesc);
+        }
+
+        /**
+         * Jumps to the label if the registry provided a codec other than {@link EnumCodec} for an enum component, which the
+         * generated code then calls instead of writing and reading the names of the constants itself.
+         */
+        private void generateIfNotEnumCodec(CodeBuilder cob, ComponentModel componentModel, Label otherCodecLabel) {
+            cob
+                    .aload(thisSlot)
+                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                    .instanceOf(enumCodecClassDesc)
+                    .ifeq(otherCodecLabel);
+        }
+
+        // stack: [] -> [encoded name of the constant in the slot]
+        private void generateLoadEnumValue(CodeBuilder cob, ComponentModel componentModel, int componentValueSlot) {
+            cob
+                    .getstatic(recordCodecClassDesc, componentModel.name + "Values", CD_byte.arrayType().arrayType())
+                    .aload(componentValueSlot)
+                    .invokevirtual(CD_Enum, "ordinal", MethodTypeDesc.of(CD_int))
+                    .aaload();
+        }
+
+        // stack: [] -> [], encoding the container in the slot, whose element has been named, with the generated loop
+        private void generateEncodeContainer(CodeBuilder cob, ComponentModel componentModel, int writerSlot, int componentValueSlot) {
+            cob
+                    .aload(thisSlot)
+                    .aload(writerSlot)
+                    .aload(componentValueSlot)
+                    .invokevirtual(recordCodecClassDesc, "encode$" + componentModel.name + "$0",
+                            MethodTypeDesc.of(CD_void, bsonWriterClassDesc, componentModel.containerClassDesc(0)));
+        }
+
+        /**
+         * Generates a {@code valueOf$name(String)} method for every enum component, which looks up a constant by name with a
+         * switch on the hash code of the name rather than through {@code Enum.valueOf}.  Names that are not a constant of
+         * the enum are still passed to {@code Enum.valueOf}, so that they fail the same way as they do with EnumCodec.
+         */
+        private void generateEnumValueOfMethods(ClassBuilder clb) {
+            for (var componentModel : componentModels) {
+                if (!componentModel.isEnum) {
+                    continue;
+                }
+                var enumClassDesc = componentModel.rawTypeClassDesc();
+                clb.withMethodBody("valueOf$" + componentModel.name,
+                        MethodTypeDesc.of(enumClassDesc, CD_String),
+                        ACC_PRIVATE | ACC_STATIC,
+                        cob -> {
+                            var nameSlot = 0;
+
+                            // Group the constants by the hashCode of their name (sorted for deterministic lookupswitch)
+                            var namesByHash = new java.util.TreeMap<Integer, List<String>>();
+                            for (var constant : componentModel.rawType.getEnumConstants()) {
+                                var name = ((Enum<?>) constant).name();
+                                namesByHash.computeIfAbsent(name.hashCode(), k -> new ArrayList<>()).add(name);
+                            }
+                            var hashLabels = new HashMap<Integer, Label>();
+                            for (var hash : namesByHash.keySet()) {
+                                hashLabels.put(hash, cob.newLabel());
+                            }
+                            var valueOfLabel = cob.newLabel();
+                            var switchCases = namesByHash.keySet().stream()
+                                    .map(hash -> SwitchCase.of(hash, hashLabels.get(hash)))
+                                    .toList();
+                            cob
+                                    .aload(nameSlot)
+                                    .invokevirtual(CD_String, "hashCode", MethodTypeDesc.of(CD_int))
+                                    .lookupswitch(valueOfLabel, switchCases);
+
+                            for (var entry : namesByHash.entrySet()) {
+                                cob.labelBinding(hashLabels.get(entry.getKey()));
+                                for (var name : entry.getValue()) {
+                                    var nextLabel = cob.newLabel();
+                                    cob
+                                            .aload(nameSlot)
+                                            .ldc(clb.constantPool().stringEntry(name))
+                                            .invokevirtual(CD_String, "equals", MethodTypeDesc.of(CD_boolean, CD_Object))
+                                            .ifeq(nextLabel)
+                                            .getstatic(enumClassDesc, name, enumClassDesc)
+                                            .areturn()
+                                            .labelBinding(nextLabel);
+                                }
+                                cob.goto_(valueOfLabel);
+                            }
+
+                            // Enum.valueOf(enum class, name), which throws IllegalArgumentException
+                            cob
+                                    .labelBinding(valueOfLabel)
+                                    .ldc(enumClassDesc)
+                                    .aload(nameSlot)
+                                    .invokestatic(CD_Enum, "valueOf", MethodTypeDesc.of(CD_Enum, CD_Class, CD_String))
+                                    .checkcast(enumClassDesc)
+                                    .areturn();
+                        });
+            }
+        }
+
+        /**
+         * Generates the methods that encode, decode and measure the List, Set and Map components whose elements the
+         * generated code handles itself, in place of the registry's collection codecs.  There is a method of each kind for
+         * every level of nested containers, e.g. {@code encode$name$0} for the outer list of a {@code List<List<String>>}
+         * component and {@code encode$name$1} for the inner lists.  Like the registry's codecs, they write null elements as
+         * BSON nulls, and decode Lists to ArrayLists, Sets to HashSets and Maps to HashMaps.
+         */
+        private void generateContainerMethods(ClassBuilder clb) {
+            for (var componentModel : componentModels) {
+                if (!componentModel.isContainer()) {
+                    continue;
+                }
+                for (int depth = 0; depth < componentModel.containerTypes.size(); depth++) {
+                    generateEncodeContainerMethod(clb, componentModel, depth);
+                    generateDecodeContainerMethod(clb, componentModel, depth);
+                    generateSizeOfContainerMethod(clb, componentModel, depth);
+                }
+            }
+        }
+
+        private void generateEncodeContainerMethod(ClassBuilder clb, ComponentModel componentModel, int depth) {
+            var isMap = componentModel.containerTypes.get(depth) == Map.class;
+            var containerClassDesc = componentModel.containerClassDesc(depth);
+            clb.withMethodBody("encode$" + componentModel.name + "$" + depth,
+                    MethodTypeDesc.of(CD_void, bsonWriterClassDesc, containerClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        var writerSlot = 1;
+                        var containerSlot = 2;
+                        var iteratorSlot = 3;
+                        var elementSlot = 4;
+                        var loopLabel = cob.newLabel();
+                        var endLabel = cob.newLabel();
+                        var nullLabel = cob.newLabel();
+
+                        cob
+                                .aload(writerSlot)
+                                .invokeinterface(bsonWriterClassDesc, isMap ? "writeStartDocument" : "writeStartArray", MethodTypeDesc.of(CD_void))
+                                .aload(containerSlot);
+                        if (isMap) {
+                            cob
+                                    .invokeinterface(CD_Map, "entrySet", MethodTypeDesc.of(CD_Set))
+                                    .invokeinterface(CD_Set, "iterator", MethodTypeDesc.of(iteratorClassDesc));
+                        } else {
+                            cob.invokeinterface(CD_Collection, "iterator", MethodTypeDesc.of(iteratorClassDesc));
+                        }
+                        cob
+                                .astore(iteratorSlot)
+                                .labelBinding(loopLabel)
+                                .aload(iteratorSlot)
+                                .invokeinterface(iteratorClassDesc, "hasNext", MethodTypeDesc.of(CD_boolean))
+                                .ifeq(endLabel)
+                                .aload(iteratorSlot)
+                                .invokeinterface(iteratorClassDesc, "next", MethodTypeDesc.of(CD_Object));
+                        if (isMap) {
+                            // writer.writeName((String) entry.getKey()), then the entry's value is the element
+                            cob
+                                    .checkcast(mapEntryClassDesc)
+                                    .dup()
+                                    .invokeinterface(mapEntryClassDesc, "getKey", MethodTypeDesc.of(CD_Object))
+                                    .checkcast(CD_String)
+                                    .aload(writerSlot)
+                                    .swap()
+                                    .invokeinterface(bsonWriterClassDesc, "writeName", MethodTypeDesc.of(CD_void, CD_String))
+                                    .invokeinterface(mapEntryClassDesc, "getValue", MethodTypeDesc.of(CD_Object));
+                        }
+                        cob
+                                .astore(elementSlot)
+                                .aload(elementSlot)
+                                .ifnull(nullLabel);
+
+                        if (depth + 1 < componentModel.containerTypes.size()) {
+                            cob
+                                    .aload(thisSlot)
+                                    .aload(writerSlot)
+                                    .aload(elementSlot)
+                                    .checkcast(componentModel.containerClassDesc(depth + 1))
+                                    .invokevirtual(recordCodecClassDesc, "encode$" + componentModel.name + "$" + (depth + 1),
+                                            MethodTypeDesc.of(CD_void, bsonWriterClassDesc, componentModel.containerClassDesc(depth + 1)));
+                        } else if (componentModel.elementType == String.class) {
+                            cob
+                                    .aload(writerSlot)
+                                    .aload(elementSlot)
+                                    .checkcast(CD_String)
+                                    .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String));
+                        } else if (componentModel.elementType.isRecord()) {
+                            generateEncodeWithCodec(cob, componentModel, writerSlot, elementSlot,
+                                    c -> c.getstatic(rawBsonHelperClassDesc, "ENCODER_CONTEXT", encoderContextClassDesc));
+                        } else {
+                            var wrapperClassDesc = ClassDesc.of(componentModel.elementType.getName());
+                            var primitiveClassDesc = ComponentModel.getClassDescForPrimitive(ComponentModel.toPrimitive(componentModel.elementType));
+                            cob
+                                    .aload(writerSlot)
+                                    .aload(elementSlot)
+                                    .checkcast(wrapperClassDesc);
+                            generateUnbox(cob, wrapperClassDesc, primitiveClassDesc);
+                            generateWritePrimitiveValue(cob, primitiveClassDesc);
+                        }
+                        cob
+                                .goto_(loopLabel)
+                                .labelBinding(nullLabel)
+                                .aload(writerSlot)
+                                .invokeinterface(bsonWriterClassDesc, "writeNull", MethodTypeDesc.of(CD_void))
+                                .goto_(loopLabel)
+                                .labelBinding(endLabel)
+                                .aload(writerSlot)
+                                .invokeinterface(bsonWriterClassDesc, isMap ? "writeEndDocument" : "writeEndArray", MethodTypeDesc.of(CD_void))
+                                .return_();
+                    });
+        }
+
+        private void generateDecodeContainerMethod(ClassBuilder clb, ComponentModel componentModel, int depth) {
+            var containerType = componentModel.containerTypes.get(depth);
+            var isMap = containerType == Map.class;
+            var containerClassDesc = componentModel.containerClassDesc(depth);
+            var implementationClassDesc = containerType == List.class ? arrayListClassDesc : containerType == Set.class ? hashSetClassDesc : hashMapClassDesc;
+            clb.withMethodBody("decode$" + componentModel.name + "$" + depth,
+                    MethodTypeDesc.of(containerClassDesc, bsonReaderClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        var readerSlot = 1;
+                        var containerSlot = 2;
+                        var keySlot = 3;
+                        var loopLabel = cob.newLabel();
+                        var endLabel = cob.newLabel();
+                        var notNullLabel = cob.newLabel();
+                        var addLabel = cob.newLabel();
+
+                        cob
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, isMap ? "readStartDocument" : "readStartArray", MethodTypeDesc.of(CD_void))
+                                .new_(implementationClassDesc)
+                                .dup()
+                                .invokespecial(implementationClassDesc, INIT_NAME, ConstantDescs.MTD_void)
+                                .astore(containerSlot)
+                                .labelBinding(loopLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
+                                .getstatic(bsonTypeClassDesc, BsonType.END_OF_DOCUMENT.name(), bsonTypeClassDesc)
+                                .if_acmpeq(endLabel);
+                        if (isMap) {
+                            cob
+                                    .aload(readerSlot)
+                                    .invokeinterface(bsonReaderClassDesc, "readName", MethodTypeDesc.of(CD_String))
+                                    .astore(keySlot);
+                        }
+                        cob.aload(containerSlot);
+                        if (isMap) {
+                            cob.aload(keySlot);
+                        }
+                        // stack: [container, (key)]
+                        cob
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "getCurrentBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
+                                .getstatic(bsonTypeClassDesc, BsonType.NULL.name(), bsonTypeClassDesc)
+                                .if_acmpne(notNullLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readNull", MethodTypeDesc.of(CD_void));
+                        generateCount(cob, "nullRead");
+                        cob
+                                .aconst_null()
+                                .goto_(addLabel)
+                                .labelBinding(notNullLabel);
+
+                        if (depth + 1 < componentModel.containerTypes.size()) {
+                            cob
+                                    .aload(thisSlot)
+                                    .aload(readerSlot)
+                                    .invokevirtual(recordCodecClassDesc, "decode$" + componentModel.name + "$" + (depth + 1),
+                                            MethodTypeDesc.of(componentModel.containerClassDesc(depth + 1), bsonReaderClassDesc));
+                        } else if (componentModel.elementType == String.class) {
+                            generateReadString(cob, readerSlot);
+                        } else if (componentModel.elementType.isRecord()) {
+                            cob
+                                    .aload(thisSlot)
+                                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                                    .aload(readerSlot)
+                                    .getstatic(rawBsonHelperClassDesc, "DECODER_CONTEXT", decoderContextClassDesc);
+                            generateInvokeCodec(cob, codecClassDesc, "decode", MethodTypeDesc.of(CD_Object, bsonReaderClassDesc, decoderContextClassDesc));
+                        } else {
+                            var primitiveClassDesc = ComponentModel.getClassDescForPrimitive(ComponentModel.toPrimitive(componentModel.elementType));
+                            generateReadPrimitive(cob, primitiveClassDesc, readerSlot);
+                            generateBox(cob, ClassDesc.of(componentModel.elementType.getName()), primitiveClassDesc);
+                        }
+
+                        // stack: [container, (key), element]
+                        cob.labelBinding(addLabel);
+                        if (isMap) {
+                            cob.invokeinterface(CD_Map, "put", MethodTypeDesc.of(CD_Object, CD_Object, CD_Object));
+                        } else {
+                            cob.invokeinterface(CD_Collection, "add", MethodTypeDesc.of(CD_boolean, CD_Object));
+                        }
+                        cob
+                                .pop()
+                                .goto_(loopLabel)
+                                .labelBinding(endLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, isMap ? "readEndDocument" : "readEndArray", MethodTypeDesc.of(CD_void))
+                                .aload(containerSlot)
+                                .areturn();
+                    });
+        }
+
+        private void generateSizeOfContainerMethod(ClassBuilder clb, ComponentModel componentModel, int depth) {
+            var isMap = componentModel.containerTypes.get(depth) == Map.class;
+            var containerClassDesc = componentModel.containerClassDesc(depth);
+            clb.withMethodBody("sizeOf$" + componentModel.name + "$" + depth,
+                    MethodTypeDesc.of(CD_int, containerClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        var containerSlot = 1;
+                        var sizeSlot = 2;
+                        var iteratorSlot = 3;
+                        var elementSlot = 4;
+                        var indexSlot = 5;
+                        var loopLabel = cob.newLabel();
+                        var endLabel = cob.newLabel();
+                        var valueSizeLabel = cob.newLabel();
+                        var addLabel = cob.newLabel();
+
+                        // the length of the document and its terminating null byte
+                        cob
+                                .iconst_5()
+                                .istore(sizeSlot)
+                                .iconst_0()
+                                .istore(indexSlot)
+                                .aload(containerSlot);
+                        if (isMap) {
+                            cob
+                                    .invokeinterface(CD_Map, "entrySet", MethodTypeDesc.of(CD_Set))
+                                    .invokeinterface(CD_Set, "iterator", MethodTypeDesc.of(iteratorClassDesc));
+                        } else {
+                            cob.invokeinterface(CD_Collection, "iterator", MethodTypeDesc.of(iteratorClassDesc));
+                        }
+                        cob
+                                .astore(iteratorSlot)
+                                .labelBinding(loopLabel)
+                                .aload(iteratorSlot)
+                                .invokeinterface(iteratorClassDesc, "hasNext", MethodTypeDesc.of(CD_boolean))
+                                .ifeq(endLabel)
+                                .aload(iteratorSlot)
+                                .invokeinterface(iteratorClassDesc, "next", MethodTypeDesc.of(CD_Object))
+                                .iload(sizeSlot);
+                        if (isMap) {
+                            // stack: [entry, size]
+                            cob
+                                    .swap()
+                                    .checkcast(mapEntryClassDesc)
+                                    .dup()
+                                    .invokeinterface(mapEntryClassDesc, "getValue", MethodTypeDesc.of(CD_Object))
+                                    .astore(elementSlot)
+                                    .invokeinterface(mapEntryClassDesc, "getKey", MethodTypeDesc.of(CD_Object))
+                                    .checkcast(CD_String)
+                                    .invokestatic(rawBsonHelperClassDesc, "getElementHeaderSize", MethodTypeDesc.of(CD_int, CD_String));
+                        } else {
+                            // stack: [element, size]
+                            cob
+                                    .swap()
+                                    .astore(elementSlot)
+                                    .iload(indexSlot)
+                                    .invokestatic(rawBsonHelperClassDesc, "getElementHeaderSize", MethodTypeDesc.of(CD_int, CD_int))
+                                    .iinc(indexSlot, 1);
+                        }
+                        // stack: [size, header size]
+                        cob
+                                .iadd()
+                                .istore(sizeSlot)
+                                .aload(elementSlot)
+                                .ifnull(loopLabel)
+                                .iload(sizeSlot);
+
+                        // stack: [size] -> [size, value size]
+                        if (depth + 1 < componentModel.containerTypes.size()) {
+                            cob
+                                    .aload(thisSlot)
+                                    .aload(elementSlot)
+                                    .checkcast(componentModel.containerClassDesc(depth + 1))
+                                    .invokevirtual(recordCodecClassDesc, "sizeOf$" + componentModel.name + "$" + (depth + 1),
+                                            MethodTypeDesc.of(CD_int, componentModel.containerClassDesc(depth + 1)));
+                        } else if (componentModel.elementType == String.class) {
+                            cob
+                                    .aload(elementSlot)
+                                    .checkcast(CD_String)
+                                    .invokestatic(rawBsonHelperClassDesc, "getStringValueSize", MethodTypeDesc.of(CD_int, CD_String));
+                        } else if (componentModel.elementType.isRecord()) {
+                            generateLoadGeneratedRecordCodec(cob, componentModel, valueSizeLabel);
+                            cob
+                                    .aload(elementSlot);
+                            generateInvokeCodec(cob, generatedRecordCodecClassDesc, "sizeOf", MethodTypeDesc.of(CD_int, CD_Object));
+                            cob
+                                    .goto_(addLabel)
+                                    .labelBinding(valueSizeLabel)
+                                    .aload(thisSlot)
+                                    .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                                    .aload(elementSlot)
+                                    .invokestatic(rawBsonHelperClassDesc, "getValueSize", MethodTypeDesc.of(CD_int, encoderClassDesc, CD_Object));
+                        } else {
+                            var primitiveClassDesc = ComponentModel.getClassDescForPrimitive(ComponentModel.toPrimitive(componentModel.elementType));
+                            if (primitiveClassDesc.equals(CD_char)) {
+                                var wrapperClassDesc = ClassDesc.of(componentModel.elementType.getName());
+                                cob
+                                        .aload(elementSlot)
+                                        .checkcast(wrapperClassDesc);
+                                generateUnbox(cob, wrapperClassDesc, primitiveClassDesc);
+                                cob.invokestatic(rawBsonHelperClassDesc, "getStringValueSize", MethodTypeDesc.of(CD_int, CD_char));
+                            } else {
+                                cob.loadConstant(getPrimitiveValueSize(primitiveClassDesc));
+                            }
+                        }
+                        cob
+                                .labelBinding(addLabel)
+                                .iadd()
+                                .istore(sizeSlot)
+                                .goto_(loopLabel)
+                                .labelBinding(endLabel)
+                                .iload(sizeSlot)
+                                .ireturn();
+                    });
+        }
+
+        /**
+         * Stores the value of the component in the slot, and if it is a reference, jumps to the null label if it is null.
+         */
+        private void generateLoadComponentValue(CodeBuilder cob, ComponentModel componentModel, int recordSlot,
+                                                int componentValueSlot, Label nullLabel) {
+            cob
+                    .aload(recordSlot)
+                    .invokevirtual(recordClassDesc, componentModel.name, MethodTypeDesc.of(componentModel.classDesc));
+            if (componentModel.isNullable && !componentModel.requiresCodec()
+                    && !componentModel.classDesc.equals(componentModel.rawTypeClassDesc())) {
+                // a type variable resolved to String or to a wrapper type
+                cob.checkcast(componentModel.rawTypeClassDesc());
+            }
+
+            if (componentModel.isNullable) {
+                cob.astore(componentValueSlot);
+            } else if (componentModel.classDesc.equals(CD_boolean)
+                    || componentModel.classDesc.equals(CD_byte)
+                    || componentModel.classDesc.equals(CD_short)
+                    || componentModel.classDesc.equals(CD_int)
+                    || componentModel.classDesc.equals(CD_char)) {
+                cob.istore(componentValueSlot);
+            } else if (componentModel.classDesc.equals(CD_long)) {
+                cob.lstore(componentValueSlot);
+            } else if (componentModel.classDesc.equals(CD_float)) {
+                cob.fstore(componentValueSlot);
+            } else if (componentModel.classDesc.equals(CD_double)) {
+                cob.dstore(componentValueSlot);
             } else {
                 throw new UnsupportedOperationException(componentModel.classDesc.toString());
             }
             // stack: []
             if (componentModel.isNullable) {
                 cob
-                        .labelBinding(l0);
+                        .aload(componentValueSlot)
+                        .ifnull(nullLabel);
+            }
+        }
+
+        private static void generateLoadPrimitive(CodeBuilder cob, ClassDesc primitiveClassDesc, int slot) {
+            if (primitiveClassDesc.equals(CD_long)) {
+                cob.lload(slot);
+            } else if (primitiveClassDesc.equals(CD_float)) {
+                cob.fload(slot);
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.dload(slot);
+            } else {
+                cob.iload(slot);
+            }
+        }
+
+        // stack: [writer, field name, value] -> []
+        private static void generateWritePrimitive(CodeBuilder cob, ClassDesc primitiveClassDesc) {
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeBoolean", MethodTypeDesc.of(CD_void, CD_String, CD_boolean));
+            } else if (primitiveClassDesc.equals(CD_byte)
+                    || primitiveClassDesc.equals(CD_short)
+                    || primitiveClassDesc.equals(CD_int)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_String, CD_int));
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeInt64", MethodTypeDesc.of(CD_void, CD_String, CD_long));
+            } else if (primitiveClassDesc.equals(CD_float)) {
+                cob
+                        .f2d()
+                        .invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_String, CD_double));
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_String, CD_double));
+            } else if (primitiveClassDesc.equals(CD_char)) {
+                cob
+                        .invokestatic(CD_String, "valueOf", MethodTypeDesc.of(CD_String, CD_char))
+                        .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String, CD_String));
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
             }
         }
 
+        // stack: [writer, value] -> [], for the elements of arrays
+        private static void generateWritePrimitiveValue(CodeBuilder cob, ClassDesc primitiveClassDesc) {
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeBoolean", MethodTypeDesc.of(CD_void, CD_boolean));
+            } else if (primitiveClassDesc.equals(CD_byte)
+                    || primitiveClassDesc.equals(CD_short)
+                    || primitiveClassDesc.equals(CD_int)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeInt32", MethodTypeDesc.of(CD_void, CD_int));
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeInt64", MethodTypeDesc.of(CD_void, CD_long));
+            } else if (primitiveClassDesc.equals(CD_float)) {
+                cob
+                        .f2d()
+                        .invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.invokeinterface(bsonWriterClassDesc, "writeDouble", MethodTypeDesc.of(CD_void, CD_double));
+            } else if (primitiveClassDesc.equals(CD_char)) {
+                cob
+                        .invokestatic(CD_String, "valueOf", MethodTypeDesc.of(CD_String, CD_char))
+                        .invokeinterface(bsonWriterClassDesc, "writeString", MethodTypeDesc.of(CD_void, CD_String));
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
+            }
+        }
+
+        // stack: [] -> [value]
+        private static void generateReadPrimitive(CodeBuilder cob, ClassDesc primitiveClassDesc, int readerSlot) {
+            cob.aload(readerSlot);
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                cob.invokeinterface(bsonReaderClassDesc, "readBoolean", MethodTypeDesc.of(CD_boolean));
+            } else if (primitiveClassDesc.equals(CD_byte)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeByte", MethodTypeDesc.of(CD_byte, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_short)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeShort", MethodTypeDesc.of(CD_short, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_int)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeInt", MethodTypeDesc.of(CD_int, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeLong", MethodTypeDesc.of(CD_long, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_float)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeFloat", MethodTypeDesc.of(CD_float, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.invokestatic(numberCodecHelperClassDesc, "decodeDouble", MethodTypeDesc.of(CD_double, bsonReaderClassDesc));
+            } else if (primitiveClassDesc.equals(CD_char)) {
+                cob.invokestatic(stringCodecHelperClassDesc, "decodeChar", MethodTypeDesc.of(CD_char, bsonReaderClassDesc));
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
+            }
+        }
+
+        // stack: [wrapper] -> [primitive], e.g. Integer.intValue()
+        private static void generateUnbox(CodeBuilder cob, ComponentModel componentModel) {
+            generateUnbox(cob, componentModel.rawTypeClassDesc(), componentModel.unboxedClassDesc);
+        }
+
+        private static void generateUnbox(CodeBuilder cob, ClassDesc wrapperClassDesc, ClassDesc primitiveClassDesc) {
+            cob.invokevirtual(wrapperClassDesc, primitiveClassDesc.displayName() + "Value", MethodTypeDesc.of(primitiveClassDesc));
+        }
+
+        // stack: [primitive] -> [wrapper], e.g. Integer.valueOf(int)
+        private static void generateBox(CodeBuilder cob, ComponentModel componentModel) {
+            generateBox(cob, componentModel.rawTypeClassDesc(), componentModel.unboxedClassDesc);
+        }
+
+        private static void generateBox(CodeBuilder cob, ClassDesc wrapperClassDesc, ClassDesc primitiveClassDesc) {
+            cob.invokestatic(wrapperClassDesc, "valueOf", MethodTypeDesc.of(wrapperClassDesc, primitiveClassDesc));
+        }
+
         private void generateDecodeMethod(ClassBuilder clb) {
             var methodTypeDesc = MethodTypeDesc.of(recordClassDesc, bsonReaderClassDesc, decoderContextClassDesc);
             var readerSlot = 1;
             var decoderContextSlot = 2;
             var nameSlot = 3;
-            var firstComponentValueSlot = 4;
-            clb.withMethodBody("decode",
+            var expectedIndexSlot = 4;
+            var firstComponentValueSlot = 5;
+            clb.withMethodBody("decode0",
                     methodTypeDesc,
-                    ACC_PUBLIC,
+                    ACC_PRIVATE,
                     cob -> {
-                        // create a local variable for each component
-                        int slot = firstComponentValueSlot;
+                        // Binary readers are decoded by matching field names against their bytes, without decoding them
+                        var notBinaryLabel = cob.newLabel();
+                        cob
+                                .aload(readerSlot)
+                                .instanceOf(bsonBinaryReaderClassDesc)
+                                .ifeq(notBinaryLabel)
+                                .aload(thisSlot)
+                                .aload(readerSlot)
+                                .checkcast(bsonBinaryReaderClassDesc)
+                                .aload(decoderContextSlot)
+                                .invokevirtual(recordCodecClassDesc, "decodeBinary",
+                                        MethodTypeDesc.of(recordClassDesc, bsonBinaryReaderClassDesc, decoderContextClassDesc))
+                                .return_(TypeKind.REFERENCE)
+                                .labelBinding(notBinaryLabel);
+
+                        var componentSlots = generateInitComponentValues(cob, firstComponentValueSlot);
+                        // index of the component expected to be read next, assuming encoding order
+                        cob
+                                .iconst_0()
+                                .istore(expectedIndexSlot);
+                        var startLoopLabel = cob.newLabel();
+                        var endLoopLabel = cob.newLabel();
+                        var endElseLabel = cob.newLabel();
+
+                        cob
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readStartDocument", MethodTypeDesc.of(CD_void));
+
+                        cob
+                                .labelBinding(startLoopLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readBsonType", MethodTypeDesc.of(bsonTypeClassDesc));
+
+                        cob
+                                .getstatic(bsonTypeClassDesc, BsonType.END_OF_DOCUMENT.name(), bsonTypeClassDesc)
+                                .if_acmpeq(endLoopLabel);
+
+                        cob
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readName", MethodTypeDesc.of(CD_String))
+                                .astore(nameSlot);
+
+                        // Labels for the code that decodes each component
+                        var componentLabels = new HashMap<ComponentModel, Label>();
                         for (var componentModel : componentModels) {
-                            if (componentModel.isNullable) {
-                                cob
-                                        .aconst_null()
-                                        .astore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_boolean)
-                                    || componentModel.classDesc.equals(CD_byte)
-                                    || componentModel.classDesc.equals(CD_short)
-                                    || componentModel.classDesc.equals(CD_int)
-                                    || componentModel.classDesc.equals(CD_char)) {
-                                cob
-                                        .iconst_0()
-                                        .istore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_long)) {
-                                cob
-                                        .lconst_0()
-                                        .lstore(slot);
-                                slot += 2;
-                            } else if (componentModel.classDesc.equals(CD_float)) {
+                            componentLabels.put(componentModel, cob.newLabel());
+                        }
+                        var hashSwitchLabel = cob.newLabel();
+
+                        // Documents written by this codec have their fields in encoding order, so first compare the name
+                        // against the component expected next, and only fall back to the hash-based switch on a mismatch
+                        if (!encodedComponentModels.isEmpty()) {
+                            var expectedCases = new ArrayList<SwitchCase>();
+                            for (int i = 0; i < encodedComponentModels.size(); i++) {
+                                expectedCases.add(SwitchCase.of(i, cob.newLabel()));
+                            }
+                            cob
+                                    .iload(expectedIndexSlot)
+                                    .tableswitch(0, encodedComponentModels.size() - 1, hashSwitchLabel, expectedCases);
+                            for (int i = 0; i < encodedComponentModels.size(); i++) {
+                                var componentModel = encodedComponentModels.get(i);
                                 cob
-                                        .fconst_0()
-                                        .fstore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_double)) {
+                                        .labelBinding(expectedCases.get(i).target())
+                                        .aload(nameSlot)
+                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                                        .invokevirtual(CD_String, "equals", MethodTypeDesc.of(CD_boolean, CD_Object))
+                                        .ifne(componentLabels.get(componentModel))
+                                        .goto_(hashSwitchLabel);
+                            }
+                        }
+                        cob.labelBinding(hashSwitchLabel);
+
+                        // Build hash-based switch for field name matching
+                        // Group components by their field name's hashCode (sorted for deterministic lookupswitch)
+                        var componentsByHash = new java.util.TreeMap<Integer, java.util.List<ComponentModel>>();
+                        for (var componentModel : componentModels) {
+                            componentsByHash.computeIfAbsent(componentModel.fieldName.hashCode(), k -> new java.util.ArrayList<>())
+                                    .add(componentModel);
+                        }
+
+                        // Create labels for each hash bucket
+                        var hashLabels = new java.util.HashMap<Integer, Label>();
+                        for (var hash : componentsByHash.keySet()) {
+                            hashLabels.put(hash, cob.newLabel());
+                        }
+                        var skipValueLabel = cob.newLabel();
+                        // Unknown fields are skipped too, after they are counted
+                        var unknownFieldLabel = metrics ? cob.newLabel() : skipValueLabel;
+
+                        // Generate the lookupswitch on name.hashCode()
+                        var switchCases = componentsByHash.keySet().stream()
+                                .map(hash -> SwitchCase.of(hash, hashLabels.get(hash)))
+                                .toList();
+                        cob
+                                .aload(nameSlot)
+                                .invokevirtual(CD_String, "hashCode", MethodTypeDesc.of(CD_int))
+                                .lookupswitch(unknownFieldLabel, switchCases);
+
+                        // Generate code for each hash bucket
+                        for (var entry : componentsByHash.entrySet()) {
+                            var hash = entry.getKey();
+                            var bucket = entry.getValue();
+                            cob.labelBinding(hashLabels.get(hash));
+
+                            for (var componentModel : bucket) {
                                 cob
-                                        .dconst_0()
-                                        .dstore(slot);
-                                slot += 2;
-                            } else {
-                                throw new UnsupportedOperationException(componentModel.classDesc.toString());
+                                        .aload(nameSlot)
+                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
+                                        .invokevirtual(CD_String, "equals", MethodTypeDesc.of(CD_boolean, CD_Object))
+                                        .ifne(componentLabels.get(componentModel));
                             }
+                            cob.goto_(unknownFieldLabel);
                         }
-                        var startLoopLabel = cob.newLabel();
-                        var endLoopLabel = cob.newLabel();
-                        var endElseLabel = cob.newLabel();
 
+                        // Generate the decode code for each component
+                        for (int i = 0; i < encodedComponentModels.size(); i++) {
+                            var componentModel = encodedComponentModels.get(i);
+                            cob
+                                    .labelBinding(componentLabels.get(componentModel))
+                                    .loadConstant(i + 1)
+                                    .istore(expectedIndexSlot);
+                            if (!isDecoded(componentModel)) {
+                                cob.goto_(skipValueLabel);
+                                continue;
+                            }
+                            generateDecodeComponent(cob, componentModel, readerSlot, componentSlots.get(componentModel), endElseLabel);
+                        }
+
+                        if (metrics) {
+                            cob.labelBinding(unknownFieldLabel);
+                            generateCount(cob, "unknownFieldSkipped");
+                        }
                         cob
+                                .labelBinding(skipValueLabel)
                                 .aload(readerSlot)
-                                .invokeinterface(bsonReaderClassDesc, "readStartDocument", MethodTypeDesc.of(CD_void));
+                                .invokeinterface(bsonReaderClassDesc, "skipValue", MethodTypeDesc.of(CD_void))
+                                .labelBinding(endElseLabel);
+
+                        cob
+                                .goto_(startLoopLabel)
+                                .labelBinding(endLoopLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readEndDocument", MethodTypeDesc.of(CD_void));
+
+                        generateNewRecord(cob, firstComponentValueSlot);
+                    }
+            );
+            generateWrapperMethod(clb, "decode", methodTypeDesc);
+
+            generateDecodeBinaryMethods(clb);
+
+            // generate bridge method
+            clb.withMethodBody("decode",
+                    MethodTypeDesc.of(CD_Object, bsonReaderClassDesc, decoderContextClassDesc),
+                    ACC_PUBLIC,
+                    cob -> cob
+                            .aload(0)
+                            .aload(1)
+                            .aload(2)
+                            .invokevirtual(recordCodecClassDesc, "decode", methodTypeDesc)
+                            .return_(TypeKind.REFERENCE)
+            );
+        }
+
+        /**
+         * Generates the decode methods that read the type and name of each element directly from a {@code BsonInput}: one for
+         * {@code BsonBinaryReader}, and {@code decode(ByteBuffer)} and {@code decodeAll(ByteBuffer, Consumer)} from
+         * {@link GeneratedRecordCodec}.  All of them delegate to a method that matches the element names against the UTF-8
+         * bytes of the field names rather than decoding them to strings, and reads values of inline components of the
+         * expected BSON type directly from the input as well.  For anything else, the input is reset to the start of the
+         * element, which is then read through a reader as usual.
+         */
+        private void generateDecodeBinaryMethods(ClassBuilder clb) {
+            var decodeElementsMtd = MethodTypeDesc.of(recordClassDesc, bsonInputClassDesc, bsonBinaryReaderClassDesc,
+                    bsonInputMarkClassDesc, CD_int, decoderContextClassDesc);
+
+            // decodeBinary(BsonBinaryReader reader, DecoderContext decoderContext)
+            clb.withMethodBody("decodeBinary",
+                    MethodTypeDesc.of(recordClassDesc, bsonBinaryReaderClassDesc, decoderContextClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        var readerSlot = 1;
+                        var decoderContextSlot = 2;
+                        var inputSlot = 3;
+                        cob
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readStartDocument", MethodTypeDesc.of(CD_void))
+                                .aload(readerSlot)
+                                .invokevirtual(bsonBinaryReaderClassDesc, "getBsonInput", MethodTypeDesc.of(bsonInputClassDesc))
+                                .astore(inputSlot)
+                                .aload(thisSlot)
+                                .aload(inputSlot)
+                                .aload(readerSlot)
+                                .aload(inputSlot)
+                                .loadConstant(Integer.MAX_VALUE)
+                                .invokeinterface(bsonInputClassDesc, "getMark", MethodTypeDesc.of(bsonInputMarkClassDesc, CD_int))
+                                .iconst_0()
+                                .aload(decoderContextSlot)
+                                .invokevirtual(recordCodecClassDesc, "decodeElements", decodeElementsMtd)
+                                .return_(TypeKind.REFERENCE);
+                    });
+
+            // decode(ByteBuffer buffer)
+            var byteBufferClassDesc = ClassDesc.of(ByteBuffer.class.getName());
+            clb.withMethodBody("decode0",
+                    MethodTypeDesc.of(recordClassDesc, byteBufferClassDesc),
+                    ACC_PRIVATE,
+                    cob -> {
+                        var bufferSlot = 1;
+                        var inputSlot = 2;
+                        var documentMarkSlot = 3;
+                        var documentEndSlot = 4;
+                        var recordSlot = 5;
+                        cob
+                                .aload(bufferSlot)
+                                .invokestatic(rawBsonHelperClassDesc, "toBsonInput", MethodTypeDesc.of(bsonInputClassDesc, byteBufferClassDesc))
+                                .astore(inputSlot)
+                                .aload(inputSlot)
+                                .loadConstant(Integer.MAX_VALUE)
+                                .invokeinterface(bsonInputClassDesc, "getMark", MethodTypeDesc.of(bsonInputMarkClassDesc, CD_int))
+                                .astore(documentMarkSlot)
+                                // documentEnd = input.getPosition() + input.readInt32()
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "readInt32", MethodTypeDesc.of(CD_int))
+                                .iadd()
+                                .istore(documentEndSlot)
+                                .aload(thisSlot)
+                                .aload(inputSlot)
+                                .aconst_null()
+                                .aload(documentMarkSlot)
+                                .iload(documentEndSlot)
+                                .getstatic(rawBsonHelperClassDesc, "DECODER_CONTEXT", decoderContextClassDesc)
+                                .invokevirtual(recordCodecClassDesc, "decodeElements", decodeElementsMtd)
+                                .astore(recordSlot)
+                                // buffer.position(input.getPosition())
+                                .aload(bufferSlot)
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                .invokevirtual(byteBufferClassDesc, "position", MethodTypeDesc.of(byteBufferClassDesc, CD_int))
+                                .pop()
+                                .aload(recordSlot)
+                                .return_(TypeKind.REFERENCE);
+                    });
+            generateWrapperMethod(clb, "decode", MethodTypeDesc.of(recordClassDesc, byteBufferClassDesc));
 
+            // decodeAll(ByteBuffer buffer, Consumer consumer), reading the documents from a single input
+            var consumerClassDesc = ClassDesc.of(Consumer.class.getName());
+            clb.withMethodBody("decodeAll",
+                    MethodTypeDesc.of(CD_void, byteBufferClassDesc, consumerClassDesc),
+                    ACC_PUBLIC,
+                    cob -> {
+                        var bufferSlot = 1;
+                        var consumerSlot = 2;
+                        var inputSlot = 3;
+                        var documentMarkSlot = 4;
+                        var documentEndSlot = 5;
+                        var recordSlot = 6;
+                        var startPositionSlot = 7;
+                        var startTimeSlot = 8;
+                        var countingSlot = 10;
+                        var codecSlot = 11;
+                        var startLoopLabel = cob.newLabel();
+                        var endLoopLabel = cob.newLabel();
+                        var tryStartLabel = cob.newLabel();
+                        var tryEndLabel = cob.newLabel();
+                        if (metrics) {
+                            // whether the documents are counted is checked once for all of them
+                            generateLoadCountingCodec(cob, countingSlot, codecSlot);
+                        }
                         cob
+                                .aload(bufferSlot)
+                                .invokestatic(rawBsonHelperClassDesc, "toBsonInput", MethodTypeDesc.of(bsonInputClassDesc, byteBufferClassDesc))
+                                .astore(inputSlot)
                                 .labelBinding(startLoopLabel)
-                                .aload(readerSlot)
-                                .invokeinterface(bsonReaderClassDesc, "readBsonType", MethodTypeDesc.of(bsonTypeClassDesc));
-
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "hasRemaining", MethodTypeDesc.of(CD_boolean))
+                                .ifeq(endLoopLabel);
+                        if (metrics) {
+                            cob
+                                    .aload(bufferSlot)
+                                    .invokevirtual(byteBufferClassDesc, "position", MethodTypeDesc.of(CD_int))
+                                    .istore(startPositionSlot)
+                                    .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                                    .invokevirtual(stripedCodecMetricsClassDesc, "startTime", MethodTypeDesc.of(CD_long))
+                                    .lstore(startTimeSlot);
+                        }
                         cob
-                                .getstatic(bsonTypeClassDesc, BsonType.END_OF_DOCUMENT.name(), bsonTypeClassDesc)
-                                .if_acmpeq(endLoopLabel);
-
+                                .labelBinding(tryStartLabel)
+                                .aload(inputSlot)
+                                .loadConstant(Integer.MAX_VALUE)
+                                .invokeinterface(bsonInputClassDesc, "getMark", MethodTypeDesc.of(bsonInputMarkClassDesc, CD_int))
+                                .astore(documentMarkSlot)
+                                // documentEnd = input.getPosition() + input.readInt32()
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "readInt32", MethodTypeDesc.of(CD_int))
+                                .iadd()
+                                .istore(documentEndSlot)
+                                .aload(metrics ? codecSlot : thisSlot)
+                                .aload(inputSlot)
+                                .aconst_null()
+                                .aload(documentMarkSlot)
+                                .iload(documentEndSlot)
+                                .getstatic(rawBsonHelperClassDesc, "DECODER_CONTEXT", decoderContextClassDesc)
+                                .invokevirtual(recordCodecClassDesc, "decodeElements", decodeElementsMtd)
+                                .labelBinding(tryEndLabel)
+                                .astore(recordSlot)
+                                // buffer.position(input.getPosition())
+                                .aload(bufferSlot)
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                .invokevirtual(byteBufferClassDesc, "position", MethodTypeDesc.of(byteBufferClassDesc, CD_int))
+                                .pop();
+                        if (metrics) {
+                            var notCountingLabel = cob.newLabel();
+                            cob
+                                    .iload(countingSlot)
+                                    .ifeq(notCountingLabel)
+                                    .getstatic(recordCodecClassDesc, "metrics", stripedCodecMetricsClassDesc)
+                                    .aload(bufferSlot)
+                                    .iload(startPositionSlot)
+                                    .lload(startTimeSlot)
+                                    .invokevirtual(stripedCodecMetricsClassDesc, "decoded",
+                                            MethodTypeDesc.of(CD_void, CD_Object, CD_int, CD_long))
+                                    .labelBinding(notCountingLabel);
+                        }
                         cob
-                                .aload(readerSlot)
-                                .invokeinterface(bsonReaderClassDesc, "readName", MethodTypeDesc.of(CD_String))
-                                .astore(nameSlot);
-
-                        // Build hash-based switch for field name matching
-                        // Group components by their field name's hashCode (sorted for deterministic lookupswitch)
-                        var componentsByHash = new java.util.TreeMap<Integer, java.util.List<ComponentModel>>();
-                        for (var componentModel : componentModels) {
-                            componentsByHash.computeIfAbsent(componentModel.fieldName.hashCode(), k -> new java.util.ArrayList<>())
-                                    .add(componentModel);
+                                .aload(consumerSlot)
+                                .aload(recordSlot)
+                                .invokeinterface(consumerClassDesc, "accept", MethodTypeDesc.of(CD_void, CD_Object))
+                                .goto_(startLoopLabel)
+                                .labelBinding(endLoopLabel)
+                                .return_();
+                        if (metrics) {
+                            // failures of the consumer are not decode failures
+                            generateCountDecodeFailures(cob, tryStartLabel, tryEndLabel, codecSlot);
                         }
+                    });
 
-                        // Create labels for each hash bucket
-                        var hashLabels = new java.util.HashMap<Integer, Label>();
-                        for (var hash : componentsByHash.keySet()) {
-                            hashLabels.put(hash, cob.newLabel());
-                        }
-                        var skipValueLabel = cob.newLabel();
+            // generate bridge method
+            clb.withMethodBody("decode",
+                    MethodTypeDesc.of(CD_Object, byteBufferClassDesc),
+                    ACC_PUBLIC,
+                    cob -> cob
+                            .aload(0)
+                            .aload(1)
+                            .invokevirtual(recordCodecClassDesc, "decode", MethodTypeDesc.of(recordClassDesc, byteBufferClassDesc))
+                            .return_(TypeKind.REFERENCE)
+            );
 
-                        // Generate the lookupswitch on name.hashCode()
-                        var switchCases = componentsByHash.keySet().stream()
-                                .map(hash -> SwitchCase.of(hash, hashLabels.get(hash)))
-                                .toList();
+            // decodeElements(BsonInput input, BsonBinaryReader reader, BsonInputMark documentMark, int documentEnd,
+            //                DecoderContext decoderContext)
+            // The input is positioned at the first element.  The reader is either positioned there too, or null, in which
+            // case it is only created if an element has to be read through it, and the document end is only used in that
+            // case.  The document mark is at the start of the document, or of its first element if there is a reader, and is
+            // the only mark taken: the start of each element is kept as a position, which the input is moved back to from
+            // the mark if the element has to be read through the reader.
+            clb.withMethodBody("decodeElements",
+                    decodeElementsMtd,
+                    ACC_PRIVATE,
+                    cob -> {
+                        var inputSlot = 1;
+                        var readerSlot = 2;
+                        var documentMarkSlot = 3;
+                        var documentEndSlot = 4;
+                        var decoderContextSlot = 5;
+                        var elementStartSlot = 6;
+                        var bsonTypeSlot = 7;
+                        var expectedIndexSlot = 8;
+                        var firstComponentValueSlot = 9;
+
+                        var componentSlots = generateInitComponentValues(cob, firstComponentValueSlot);
                         cob
-                                .aload(nameSlot)
-                                .invokevirtual(CD_String, "hashCode", MethodTypeDesc.of(CD_int))
-                                .lookupswitch(skipValueLabel, switchCases);
+                                .iconst_0()
+                                .istore(expectedIndexSlot);
+                        var startLoopLabel = cob.newLabel();
+                        var endLoopLabel = cob.newLabel();
+                        var skipValueLabel = cob.newLabel();
 
-                        // Generate code for each hash bucket
-                        // We need to track slot offsets for each component
-                        var componentSlots = new java.util.HashMap<ComponentModel, Integer>();
-                        slot = firstComponentValueSlot;
-                        for (var componentModel : componentModels) {
-                            componentSlots.put(componentModel, slot);
-                            if (componentModel.classDesc.equals(CD_long) || componentModel.classDesc.equals(CD_double)) {
-                                slot += 2;
-                            } else {
-                                slot += 1;
+                        cob
+                                .labelBinding(startLoopLabel)
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                .istore(elementStartSlot)
+                                .aload(inputSlot)
+                                .invokeinterface(bsonInputClassDesc, "readByte", MethodTypeDesc.of(CD_byte))
+                                .istore(bsonTypeSlot)
+                                .iload(bsonTypeSlot)
+                                .ifeq(endLoopLabel)
+                                .getstatic(recordCodecClassDesc, "fieldNameMatcher", fieldNameMatcherClassDesc)
+                                .aload(inputSlot)
+                                .iload(expectedIndexSlot)
+                                .invokevirtual(fieldNameMatcherClassDesc, "readName",
+                                        MethodTypeDesc.of(CD_int, bsonInputClassDesc, CD_int));
+                        // stack: [index of the component in encoding order, or -1]
+
+                        if (encodedComponentModels.isEmpty()) {
+                            cob
+                                    .pop()
+                                    .goto_(skipValueLabel);
+                        } else {
+                            var cases = new ArrayList<SwitchCase>();
+                            for (int i = 0; i < encodedComponentModels.size(); i++) {
+                                cases.add(SwitchCase.of(i, cob.newLabel()));
                             }
-                        }
-
-                        for (var entry : componentsByHash.entrySet()) {
-                            var hash = entry.getKey();
-                            var bucket = entry.getValue();
-                            cob.labelBinding(hashLabels.get(hash));
-
-                            for (int i = 0; i < bucket.size(); i++) {
-                                var componentModel = bucket.get(i);
-                                var isLast = (i == bucket.size() - 1);
-                                var nextCheckLabel = isLast ? skipValueLabel : cob.newLabel();
+                            cob.tableswitch(0, encodedComponentModels.size() - 1, skipValueLabel, cases);
 
-                                // Check if name.equals(fieldName)
+                            for (int i = 0; i < encodedComponentModels.size(); i++) {
+                                var componentModel = encodedComponentModels.get(i);
+                                var slot = componentSlots.get(componentModel);
+                                var readerFallbackLabel = cob.newLabel();
                                 cob
-                                        .aload(nameSlot)
-                                        .ldc(clb.constantPool().stringEntry(componentModel.fieldName))
-                                        .invokevirtual(CD_String, "equals", MethodTypeDesc.of(CD_boolean, CD_Object))
-                                        .ifeq(nextCheckLabel);
-
-                                // Field matched - generate decode code
-                                slot = componentSlots.get(componentModel);
-
-                            // Check for BsonType.NULL
-                            var notNullLabel = cob.newLabel();
-                            cob
-                                    .aload(readerSlot)
-                                    .invokeinterface(bsonReaderClassDesc, "getCurrentBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
-                                    .getstatic(bsonTypeClassDesc, BsonType.NULL.name(), bsonTypeClassDesc)
-                                    .if_acmpne(notNullLabel);
+                                        .labelBinding(cases.get(i).target())
+                                        .loadConstant(i + 1)
+                                        .istore(expectedIndexSlot);
+
+                                if (!isDecoded(componentModel)) {
+                                    cob
+                                            .aload(inputSlot)
+                                            .iload(bsonTypeSlot)
+                                            .invokestatic(rawBsonHelperClassDesc, "skipValue",
+                                                    MethodTypeDesc.of(CD_void, bsonInputClassDesc, CD_int))
+                                            .goto_(startLoopLabel);
+                                    continue;
+                                }
 
-                            // Handle NULL value
-                            if (componentModel.isNullable) {
-                                // For nullable fields: just read the null and continue (value stays null)
-                                cob
-                                        .aload(readerSlot)
-                                        .invokeinterface(bsonReaderClassDesc, "readNull", MethodTypeDesc.of(CD_void))
-                                        .goto_(endElseLabel);
-                            } else {
-                                // For primitives: throw BsonInvalidOperationException
-                                cob
-                                        .new_(bsonInvalidOperationExceptionClassDesc)
-                                        .dup()
-                                        .ldc(format("Null value for non-nullable field: %s", componentModel.fieldName))
-                                        .invokespecial(bsonInvalidOperationExceptionClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
-                                        .athrow();
-                            }
+                                var directBsonType = getDirectBsonType(componentModel);
+                                if (directBsonType != null) {
+                                    cob
+                                            .iload(bsonTypeSlot)
+                                            .loadConstant(directBsonType.getValue())
+                                            .if_icmpne(readerFallbackLabel);
+                                    generateReadDirect(cob, componentModel, inputSlot, slot, readerFallbackLabel);
+                                    cob.goto_(startLoopLabel);
+                                }
 
-                            // Not null - decode normally
-                            cob.labelBinding(notNullLabel);
-                            if (componentModel.isNullable) {
-                                cob
-                                        .aload(decoderContextSlot)
-                                        .aload(thisSlot)
-                                        .getfield(recordCodecClassDesc, componentModel.name + "Codec", codecClassDesc)
-                                        .aload(readerSlot)
-                                        .invokevirtual(decoderContextClassDesc, "decodeWithChildContext",
-                                                MethodTypeDesc.of(CD_Object, decoderClassDesc, bsonReaderClassDesc))
-                                        .checkcast(ClassDesc.of(componentModel.rawType.getName()))
-                                        .astore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_boolean)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokeinterface(bsonReaderClassDesc, "readBoolean", MethodTypeDesc.of(CD_boolean))
-                                        .istore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_byte)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeByte", MethodTypeDesc.of(CD_byte, bsonReaderClassDesc))
-                                        .istore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_short)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeShort", MethodTypeDesc.of(CD_short, bsonReaderClassDesc))
-                                        .istore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_int)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeInt", MethodTypeDesc.of(CD_int, bsonReaderClassDesc))
-                                        .istore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_long)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeLong", MethodTypeDesc.of(CD_long, bsonReaderClassDesc))
-                                        .lstore(slot);
-                                slot += 2;
-                            } else if (componentModel.classDesc.equals(CD_float)) {
+                                cob.labelBinding(readerFallbackLabel);
+                                generateResetToReader(cob, inputSlot, readerSlot, documentMarkSlot, elementStartSlot);
                                 cob
                                         .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeFloat", MethodTypeDesc.of(CD_float, bsonReaderClassDesc))
-                                        .fstore(slot++);
-                            } else if (componentModel.classDesc.equals(CD_double)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(numberCodecHelperClassDesc, "decodeDouble", MethodTypeDesc.of(CD_double, bsonReaderClassDesc))
-                                        .dstore(slot);
-                                slot += 2;
-                            } else if (componentModel.classDesc.equals(CD_char)) {
-                                cob
-                                        .aload(readerSlot)
-                                        .invokestatic(stringCodecHelperClassDesc, "decodeChar", MethodTypeDesc.of(CD_char, bsonReaderClassDesc))
-                                        .istore(slot++);
-                            } else {
-                                throw new UnsupportedOperationException(componentModel.classDesc.toString());
-                            }
-                            cob.goto_(endElseLabel);
-
-                                // Bind label for next check in bucket (or fall through to skipValue)
-                                if (!isLast) {
-                                    cob.labelBinding(nextCheckLabel);
-                                }
+                                        .invokeinterface(bsonReaderClassDesc, "skipName", MethodTypeDesc.of(CD_void));
+                                generateDecodeComponent(cob, componentModel, readerSlot, slot, startLoopLabel);
                             }
                         }
 
+                        // Only unknown fields are skipped here, as the values of components that are not decoded are skipped
+                        // directly in the input
+                        cob.labelBinding(skipValueLabel);
+                        generateCount(cob, "unknownFieldSkipped");
+                        generateResetToReader(cob, inputSlot, readerSlot, documentMarkSlot, elementStartSlot);
                         cob
-                                .labelBinding(skipValueLabel)
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "skipName", MethodTypeDesc.of(CD_void))
                                 .aload(readerSlot)
                                 .invokeinterface(bsonReaderClassDesc, "skipValue", MethodTypeDesc.of(CD_void))
-                                .labelBinding(endElseLabel);
+                                .goto_(startLoopLabel);
 
+                        // If there is a reader, hand the end of the document back to it too, so that it checks the
+                        // document's length.  Otherwise, check it here.
+                        var noReaderLabel = cob.newLabel();
+                        var newRecordLabel = cob.newLabel();
                         cob
-                                .goto_(startLoopLabel)
                                 .labelBinding(endLoopLabel)
                                 .aload(readerSlot)
-                                .invokeinterface(bsonReaderClassDesc, "readEndDocument", MethodTypeDesc.of(CD_void));
-
-                        var paramDescriptors = componentModels.stream()
-                                .map(componentModel -> componentModel.classDesc)
-                                .toList();
-                        var recordConstructorMtd = MethodTypeDesc.of(CD_void, paramDescriptors);
+                                .ifnull(noReaderLabel);
+                        generateResetToReader(cob, inputSlot, readerSlot, documentMarkSlot, elementStartSlot);
                         cob
-                                .new_(recordClassDesc)
-                                .dup();
+                                .aload(readerSlot)
+                                .invokeinterface(bsonReaderClassDesc, "readEndDocument", MethodTypeDesc.of(CD_void))
+                                .goto_(newRecordLabel)
+                                .labelBinding(noReaderLabel)
+                                .aload(inputSlot)
+                                .iload(documentEndSlot)
+                                .invokestatic(rawBsonHelperClassDesc, "checkEndOfDocument",
+                                        MethodTypeDesc.of(CD_void, bsonInputClassDesc, CD_int))
+                                .labelBinding(newRecordLabel);
+
+                        generateNewRecord(cob, firstComponentValueSlot);
+                    });
+        }
 
-                        slot = firstComponentValueSlot;
-                        for (var componentModel : componentModels) {
-                            if (componentModel.isNullable) {
-                                cob.aload(slot++);
-                            } else if (componentModel.classDesc.equals(CD_boolean)
-                                    || componentModel.classDesc.equals(CD_byte)
-                                    || componentModel.classDesc.equals(CD_short)
-                                    || componentModel.classDesc.equals(CD_int)
-                                    || componentModel.classDesc.equals(CD_char)) {
-                                cob.iload(slot++);
-                            } else if (componentModel.classDesc.equals(CD_long)) {
-                                cob.lload(slot);
-                                slot += 2;
-                            } else if (componentModel.classDesc.equals(CD_float)) {
-                                cob.fload(slot++);
-                            } else if (componentModel.classDesc.equals(CD_double)) {
-                                cob.dload(slot);
-                                slot += 2;
-                            } else {
-                                throw new UnsupportedOperationException(componentModel.classDesc.toString());
-                            }
-                        }
+        /**
+         * Moves the input back to the start of the current element and reads its type through the reader.  If there is no
+         * reader yet, creates one over the input that has read the start of the document.
+         */
+        private static void generateResetToReader(CodeBuilder cob, int inputSlot, int readerSlot, int documentMarkSlot,
+                                                  int elementStartSlot) {
+            var resetLabel = cob.newLabel();
+            cob
+                    .aload(readerSlot)
+                    .ifnonnull(resetLabel)
+                    .aload(documentMarkSlot)
+                    .invokeinterface(bsonInputMarkClassDesc, "reset", MethodTypeDesc.of(CD_void))
+                    .new_(bsonBinaryReaderClassDesc)
+                    .dup()
+                    .aload(inputSlot)
+                    .invokespecial(bsonBinaryReaderClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, bsonInputClassDesc))
+                    .astore(readerSlot)
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "readStartDocument", MethodTypeDesc.of(CD_void))
+                    .labelBinding(resetLabel)
+                    .aload(inputSlot)
+                    .aload(documentMarkSlot)
+                    .iload(elementStartSlot)
+                    .invokestatic(rawBsonHelperClassDesc, "setPosition",
+                            MethodTypeDesc.of(CD_void, bsonInputClassDesc, bsonInputMarkClassDesc, CD_int))
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "readBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
+                    .pop();
+        }
 
-                        cob
-                                .invokespecial(recordClassDesc, INIT_NAME, recordConstructorMtd)
-                                .return_(TypeKind.REFERENCE);
-                    }
-            );
+        // The BSON type whose values are read directly from the input for the component, or null if they never are
+        private static BsonType getDirectBsonType(ComponentModel componentModel) {
+            if (componentModel.isPrimitiveArray || componentModel.isEnum) {
+                return getEncodedBsonType(componentModel);
+            }
+            if (componentModel.isString) {
+                return componentModel.bsonRepresentationType == BsonType.OBJECT_ID ? BsonType.OBJECT_ID : BsonType.STRING;
+            }
+            var primitiveClassDesc = componentModel.unboxedClassDesc != null ? componentModel.unboxedClassDesc : componentModel.classDesc;
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                return BsonType.BOOLEAN;
+            } else if (primitiveClassDesc.equals(CD_int)) {
+                return BsonType.INT32;
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                return BsonType.INT64;
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                return BsonType.DOUBLE;
+            } else {
+                return null;
+            }
+        }
 
-            // generate bridge method
-            clb.withMethodBody("decode",
-                    MethodTypeDesc.of(CD_Object, bsonReaderClassDesc, decoderContextClassDesc),
+        /**
+         * Generates {@code getExtractor(String)} from {@link GeneratedRecordCodec}, and an {@code extract$name(ByteBuffer)}
+         * method for every component that it returns a handle to.  Each extract method scans the elements of the document
+         * with the field name matcher, skips the values of other elements directly in the input, and reads the value of the
+         * component's element as decodeElements does: directly if it has the expected BSON type, and otherwise through a
+         * reader over the same bytes.
+         */
+        private void generateExtractMethods(ClassBuilder clb) {
+            var byteBufferClassDesc = ClassDesc.of(ByteBuffer.class.getName());
+            clb.withMethodBody("getExtractor",
+                    MethodTypeDesc.of(ConstantDescs.CD_MethodHandle, CD_String),
                     ACC_PUBLIC,
                     cob -> cob
-                            .aload(0)
+                            .invokestatic(ConstantDescs.CD_MethodHandles, "lookup", MethodTypeDesc.of(ConstantDescs.CD_MethodHandles_Lookup))
+                            .aload(thisSlot)
                             .aload(1)
-                            .aload(2)
-                            .invokevirtual(recordCodecClassDesc, "decode", methodTypeDesc)
-                            .return_(TypeKind.REFERENCE)
-            );
+                            .invokestatic(rawBsonHelperClassDesc, "getExtractor", MethodTypeDesc.of(ConstantDescs.CD_MethodHandle,
+                                    ConstantDescs.CD_MethodHandles_Lookup, generatedRecordCodecClassDesc, CD_String))
+                            .areturn());
+
+            for (int i = 0; i < encodedComponentModels.size(); i++) {
+                var componentModel = encodedComponentModels.get(i);
+                var index = i;
+                var typeKind = TypeKind.from(componentModel.classDesc);
+                clb.withMethodBody("extract$" + componentModel.name,
+                        MethodTypeDesc.of(componentModel.classDesc, byteBufferClassDesc),
+                        ACC_PUBLIC,
+                        cob -> {
+                            var bufferSlot = 1;
+                            var inputSlot = 2;
+                            var documentMarkSlot = 3;
+                            var elementStartSlot = 4;
+                            var readerSlot = 5;
+                            var bsonTypeSlot = 6;
+                            var valueSlot = 7;
+
+                            cob
+                                    .aload(bufferSlot)
+                                    .invokestatic(rawBsonHelperClassDesc, "toBsonInput", MethodTypeDesc.of(bsonInputClassDesc, byteBufferClassDesc))
+                                    .astore(inputSlot)
+                                    .aload(inputSlot)
+                                    .loadConstant(Integer.MAX_VALUE)
+                                    .invokeinterface(bsonInputClassDesc, "getMark", MethodTypeDesc.of(bsonInputMarkClassDesc, CD_int))
+                                    .astore(documentMarkSlot)
+                                    // the size of the document
+                                    .aload(inputSlot)
+                                    .invokeinterface(bsonInputClassDesc, "readInt32", MethodTypeDesc.of(CD_int))
+                                    .pop()
+                                    .aconst_null()
+                                    .astore(readerSlot);
+                            // the value of a missing element is the default value of the component's type
+                            switch (typeKind) {
+                                case REFERENCE -> cob.aconst_null();
+                                case LONG -> cob.lconst_0();
+                                case FLOAT -> cob.fconst_0();
+                                case DOUBLE -> cob.dconst_0();
+                                default -> cob.iconst_0();
+                            }
+                            cob.storeLocal(typeKind, valueSlot);
+
+                            var startLoopLabel = cob.newLabel();
+                            var endLabel = cob.newLabel();
+                            var matchLabel = cob.newLabel();
+                            var readerFallbackLabel = cob.newLabel();
+                            cob
+                                    .labelBinding(startLoopLabel)
+                                    .aload(inputSlot)
+                                    .invokeinterface(bsonInputClassDesc, "getPosition", MethodTypeDesc.of(CD_int))
+                                    .istore(elementStartSlot)
+                                    .aload(inputSlot)
+                                    .invokeinterface(bsonInputClassDesc, "readByte", MethodTypeDesc.of(CD_byte))
+                                    .istore(bsonTypeSlot)
+                                    .iload(bsonTypeSlot)
+                                    .ifeq(endLabel)
+                                    .getstatic(recordCodecClassDesc, "fieldNameMatcher", fieldNameMatcherClassDesc)
+                                    .aload(inputSlot)
+                                    .loadConstant(index)
+                                    .invokevirtual(fieldNameMatcherClassDesc, "readName",
+                                            MethodTypeDesc.of(CD_int, bsonInputClassDesc, CD_int))
+                                    .loadConstant(index)
+                                    .if_icmpeq(matchLabel)
+                                    .aload(inputSlot)
+                                    .iload(bsonTypeSlot)
+                                    .invokestatic(rawBsonHelperClassDesc, "skipValue", MethodTypeDesc.of(CD_void, bsonInputClassDesc, CD_int))
+                                    .goto_(startLoopLabel)
+                                    .labelBinding(matchLabel);
+
+                            var directBsonType = getDirectBsonType(componentModel);
+                            if (directBsonType != null) {
+                                cob
+                                        .iload(bsonTypeSlot)
+                                        .loadConstant(directBsonType.getValue())
+                                        .if_icmpne(readerFallbackLabel);
+                                generateReadDirect(cob, componentModel, inputSlot, valueSlot, readerFallbackLabel);
+                                cob.goto_(endLabel);
+                            }
+
+                            cob.labelBinding(readerFallbackLabel);
+                            generateResetToReader(cob, inputSlot, readerSlot, documentMarkSlot, elementStartSlot);
+                            cob
+                                    .aload(readerSlot)
+                                    .invokeinterface(bsonReaderClassDesc, "skipName", MethodTypeDesc.of(CD_void));
+                            generateDecodeComponent(cob, componentModel, readerSlot, valueSlot, endLabel);
+
+                            cob
+                                    .labelBinding(endLabel)
+                                    .loadLocal(typeKind, valueSlot)
+                                    .return_(typeKind);
+                        });
+            }
+        }
+
+        // Whether the component is decoded, rather than skipped and left with its default value by a projection
+        private boolean isDecoded(ComponentModel componentModel) {
+            return decodedComponentNames == null || decodedComponentNames.contains(componentModel.name);
+        }
+
+        // Reads the value of the component directly from the input, which is positioned at a value of its direct BSON type,
+        // or jumps to the fallback label if the value has to be read through a reader after all
+        private void generateReadDirect(CodeBuilder cob, ComponentModel componentModel, int inputSlot, int slot,
+                                        Label readerFallbackLabel) {
+            if (componentModel.isEnum) {
+                generateIfNotEnumCodec(cob, componentModel, readerFallbackLabel);
+                cob
+                        .aload(inputSlot)
+                        .invokeinterface(bsonInputClassDesc, "readString", MethodTypeDesc.of(CD_String))
+                        .invokestatic(recordCodecClassDesc, "valueOf$" + componentModel.name,
+                                MethodTypeDesc.of(componentModel.rawTypeClassDesc(), CD_String))
+                        .astore(slot);
+                return;
+            }
+            cob.aload(inputSlot);
+            if (componentModel.isPrimitiveArray) {
+                var nullLabel = cob.newLabel();
+                var endLabel = cob.newLabel();
+                cob
+                        .invokestatic(primitiveArraysClassDesc, getReadPrimitiveArrayMethodName(componentModel),
+                                MethodTypeDesc.of(componentModel.rawTypeClassDesc(), bsonInputClassDesc))
+                        .dup()
+                        .ifnull(nullLabel)
+                        .astore(slot)
+                        .goto_(endLabel)
+                        .labelBinding(nullLabel)
+                        .pop()
+                        .goto_(readerFallbackLabel)
+                        .labelBinding(endLabel);
+                return;
+            }
+            if (componentModel.isString) {
+                if (componentModel.bsonRepresentationType == BsonType.OBJECT_ID) {
+                    cob
+                            .invokeinterface(bsonInputClassDesc, "readObjectId", MethodTypeDesc.of(objectIdClassDesc))
+                            .invokevirtual(objectIdClassDesc, "toHexString", MethodTypeDesc.of(CD_String));
+                } else {
+                    cob.invokeinterface(bsonInputClassDesc, "readString", MethodTypeDesc.of(CD_String));
+                }
+                cob.astore(slot);
+                return;
+            }
+            var primitiveClassDesc = componentModel.unboxedClassDesc != null ? componentModel.unboxedClassDesc : componentModel.classDesc;
+            if (primitiveClassDesc.equals(CD_boolean)) {
+                cob.invokestatic(rawBsonHelperClassDesc, "readBoolean", MethodTypeDesc.of(CD_boolean, bsonInputClassDesc));
+            } else if (primitiveClassDesc.equals(CD_int)) {
+                cob.invokeinterface(bsonInputClassDesc, "readInt32", MethodTypeDesc.of(CD_int));
+            } else if (primitiveClassDesc.equals(CD_long)) {
+                cob.invokeinterface(bsonInputClassDesc, "readInt64", MethodTypeDesc.of(CD_long));
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.invokeinterface(bsonInputClassDesc, "readDouble", MethodTypeDesc.of(CD_double));
+            } else {
+                throw new UnsupportedOperationException(primitiveClassDesc.toString());
+            }
+            if (componentModel.unboxedClassDesc != null) {
+                generateBox(cob, componentModel);
+                cob.astore(slot);
+            } else {
+                generateStorePrimitive(cob, primitiveClassDesc, slot);
+            }
+        }
+
+        private static String getReadPrimitiveArrayMethodName(ComponentModel componentModel) {
+            if (componentModel.rawType == int[].class) {
+                return "readInt32Array";
+            } else if (componentModel.rawType == long[].class) {
+                return "readInt64Array";
+            } else if (componentModel.rawType == double[].class) {
+                return "readDoubleArray";
+            } else {
+                return "readBinary";
+            }
+        }
+
+        // Decodes the component through the reader, which is positioned at its value, and jumps to the end label
+        private void generateDecodeComponent(CodeBuilder cob, ComponentModel componentModel, int readerSlot, int slot,
+                                             Label endLabel) {
+            // Check for BsonType.NULL
+            var notNullLabel = cob.newLabel();
+            cob
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "getCurrentBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
+                    .getstatic(bsonTypeClassDesc, BsonType.NULL.name(), bsonTypeClassDesc)
+                    .if_acmpne(notNullLabel);
+
+            // Handle NULL value
+            if (componentModel.isNullable) {
+                // For nullable fields: just read the null and continue (value stays null)
+                cob
+                        .aload(readerSlot)
+                        .invokeinterface(bsonReaderClassDesc, "readNull", MethodTypeDesc.of(CD_void));
+                generateCount(cob, "nullRead");
+                cob.goto_(endLabel);
+            } else {
+                // For primitives: throw BsonInvalidOperationException
+                cob
+                        .new_(bsonInvalidOperationExceptionClassDesc)
+                        .dup()
+                        .ldc(format("Null value for non-nullable field: %s", componentModel.fieldName))
+                        .invokespecial(bsonInvalidOperationExceptionClassDesc, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+                        .athrow();
+            }
+
+            // Not null - decode normally
+            cob.labelBinding(notNullLabel);
+            if (componentModel.isString) {
+                if (componentModel.bsonRepresentationType == BsonType.OBJECT_ID) {
+                    cob
+                            .aload(readerSlot)
+                            .invokeinterface(bsonReaderClassDesc, "readObjectId", MethodTypeDesc.of(objectIdClassDesc))
+                            .invokevirtual(objectIdClassDesc, "toHexString", MethodTypeDesc.of(CD_String));
+                } else {
+                    generateReadString(cob, readerSlot);
+                }
+                cob.astore(slot);
+            } else if (componentModel.unboxedClassDesc != null) {
+                generateReadPrimitive(cob, componentModel.unboxedClassDesc, readerSlot);
+                generateBox(cob, componentModel);
+                cob.astore(slot);
+            } else if (componentModel.isPrimitiveArray) {
+                cob
+                        .aload(readerSlot)
+                        .invokestatic(primitiveArraysClassDesc, getReadPrimitiveArrayMethodName(componentModel),
+                                MethodTypeDesc.of(componentModel.rawTypeClassDesc(), bsonReaderClassDesc))
+                        .astore(slot);
+            } else if (componentModel.isContainer()) {
+                cob
+                        .aload(thisSlot)
+                        .aload(readerSlot)
+                        .invokevirtual(recordCodecClassDesc, "decode$" + componentModel.name + "$0",
+                                MethodTypeDesc.of(componentModel.containerClassDesc(0), bsonReaderClassDesc))
+                        .astore(slot);
+            } else if (componentModel.isNullable) {
+                if (componentModel.isEnum) {
+                    var codecLabel = cob.newLabel();
+                    generateIfNotEnumCodec(cob, componentModel, codecLabel);
+                    cob
+                            .aload(readerSlot)
+                            .invokeinterface(bsonReaderClassDesc, "readString", MethodTypeDesc.of(CD_String))
+                            .invokestatic(recordCodecClassDesc, "valueOf$" + componentModel.name,
+                                    MethodTypeDesc.of(componentModel.rawTypeClassDesc(), CD_String))
+                            .astore(slot)
+                            .goto_(endLabel)
+                            .labelBinding(codecLabel);
+                }
+                // As DecoderContext.decodeWithChildContext does, but calling the codec from here rather than from a call site
+                // shared with every other codec
+                cob
+                        .aload(thisSlot)
+                        .invokevirtual(recordCodecClassDesc, "codec$" + componentModel.name, MethodTypeDesc.of(codecClassDesc))
+                        .aload(readerSlot)
+                        .getstatic(rawBsonHelperClassDesc, "DECODER_CONTEXT", decoderContextClassDesc);
+                generateInvokeCodec(cob, codecClassDesc, "decode", MethodTypeDesc.of(CD_Object, bsonReaderClassDesc, decoderContextClassDesc));
+                cob
+                        .checkcast(componentModel.rawTypeClassDesc())
+                        .astore(slot);
+            } else {
+                generateReadPrimitive(cob, componentModel.classDesc, readerSlot);
+                generateStorePrimitive(cob, componentModel.classDesc, slot);
+            }
+            cob.goto_(endLabel);
+        }
+
+        // stack: [] -> [string]
+        private static void generateReadString(CodeBuilder cob, int readerSlot) {
+            // Like StringCodec, accept the deprecated symbol type as well
+            var readStringLabel = cob.newLabel();
+            var endLabel = cob.newLabel();
+            cob
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "getCurrentBsonType", MethodTypeDesc.of(bsonTypeClassDesc))
+                    .getstatic(bsonTypeClassDesc, BsonType.SYMBOL.name(), bsonTypeClassDesc)
+                    .if_acmpne(readStringLabel)
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "readSymbol", MethodTypeDesc.of(CD_String))
+                    .goto_(endLabel)
+                    .labelBinding(readStringLabel)
+                    .aload(readerSlot)
+                    .invokeinterface(bsonReaderClassDesc, "readString", MethodTypeDesc.of(CD_String))
+                    .labelBinding(endLabel);
+        }
+
+        private static void generateStorePrimitive(CodeBuilder cob, ClassDesc primitiveClassDesc, int slot) {
+            if (primitiveClassDesc.equals(CD_long)) {
+                cob.lstore(slot);
+            } else if (primitiveClassDesc.equals(CD_float)) {
+                cob.fstore(slot);
+            } else if (primitiveClassDesc.equals(CD_double)) {
+                cob.dstore(slot);
+            } else {
+                cob.istore(slot);
+            }
+        }
+
+        // Creates a local variable with the default value for each component, and returns their slots
+        private Map<ComponentModel, Integer> generateInitComponentValues(CodeBuilder cob, int firstComponentValueSlot) {
+            var componentSlots = new HashMap<ComponentModel, Integer>();
+            int slot = firstComponentValueSlot;
+            for (var componentModel : componentModels) {
+                componentSlots.put(componentModel, slot);
+                if (componentModel.isNullable) {
+                    cob
+                            .aconst_null()
+                            .astore(slot++);
+                } else if (componentModel.classDesc.equals(CD_boolean)
+                        || componentModel.classDesc.equals(CD_byte)
+                        || componentModel.classDesc.equals(CD_short)
+                        || componentModel.classDesc.equals(CD_int)
+                        || componentModel.classDesc.equals(CD_char)) {
+                    cob
+                            .iconst_0()
+                            .istore(slot++);
+                } else if (componentModel.classDesc.equals(CD_long)) {
+                    cob
+                            .lconst_0()
+                            .lstore(slot);
+                    slot += 2;
+                } else if (componentModel.classDesc.equals(CD_float)) {
+                    cob
+                            .fconst_0()
+                            .fstore(slot++);
+                } else if (componentModel.classDesc.equals(CD_double)) {
+                    cob
+                            .dconst_0()
+                            .dstore(slot);
+                    slot += 2;
+                } else {
+                    throw new UnsupportedOperationException(componentModel.classDesc.toString());
+                }
+            }
+            return componentSlots;
+        }
+
+        // Constructs the record from the component local variables and returns it
+        private void generateNewRecord(CodeBuilder cob, int firstComponentValueSlot) {
+            var paramDescriptors = componentModels.stream()
+                    .map(componentModel -> componentModel.classDesc)
+                    .toList();
+            var recordConstructorMtd = MethodTypeDesc.of(CD_void, paramDescriptors);
+            cob
+                    .new_(recordClassDesc)
+                    .dup();
+
+            int slot = firstComponentValueSlot;
+            for (var componentModel : componentModels) {
+                if (componentModel.isNullable) {
+                    cob.aload(slot++);
+                } else if (componentModel.classDesc.equals(CD_boolean)
+                        || componentModel.classDesc.equals(CD_byte)
+                        || componentModel.classDesc.equals(CD_short)
+                        || componentModel.classDesc.equals(CD_int)
+                        || componentModel.classDesc.equals(CD_char)) {
+                    cob.iload(slot++);
+                } else if (componentModel.classDesc.equals(CD_long)) {
+                    cob.lload(slot);
+                    slot += 2;
+                } else if (componentModel.classDesc.equals(CD_float)) {
+                    cob.fload(slot++);
+                } else if (componentModel.classDesc.equals(CD_double)) {
+                    cob.dload(slot);
+                    slot += 2;
+                } else {
+                    throw new UnsupportedOperationException(componentModel.classDesc.toString());
+                }
+            }
+
+            cob
+                    .invokespecial(recordClassDesc, INIT_NAME, recordConstructorMtd)
+                    .return_(TypeKind.REFERENCE);
         }
 
         private static <T> List<ComponentModel> getComponentModels(final Class<T> clazz,
@@ -724,6 +3176,18 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             return componentModels;
         }
 
+        private static List<ComponentModel> getEncodedComponentModels(final List<ComponentModel> componentModels) {
+            var encodedComponentModels = new ArrayList<ComponentModel>(componentModels.size());
+            for (var componentModel : componentModels) {
+                if ("_id".equals(componentModel.fieldName)) {
+                    encodedComponentModels.add(0, componentModel);
+                } else {
+                    encodedComponentModels.add(componentModel);
+                }
+            }
+            return encodedComponentModels;
+        }
+
         private static final class ComponentModel {
             private final String name;
             private final String fieldName;
@@ -732,6 +3196,21 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             private final Class<?> rawType;
             private final List<Type> typeArguments;
             private final BsonType bsonRepresentationType;
+            // Strings are written and read inline by the generated code, rather than through a codec from the registry
+            private final boolean isString;
+            // For wrapper types, the primitive type they are unboxed to and written and read as inline; otherwise null
+            private final ClassDesc unboxedClassDesc;
+            // Records are encoded by their generated codec directly, if the registry provides one
+            private final boolean isRecord;
+            // int[], long[] and double[] components are written and read as BSON arrays, and byte[] as binary, inline
+            private final boolean isPrimitiveArray;
+            // Enums are written and read by the generated code directly, if the registry provides the default EnumCodec
+            private final boolean isEnum;
+            // For List, Set and Map<String, ...> components whose elements are encoded and decoded by the generated code,
+            // the container types from the outermost in, e.g. [List, Map] for List<Map<String, T>>; otherwise empty
+            private final List<Class<?>> containerTypes;
+            // For those components, the type of the innermost elements: String, a wrapper type or a non-generic record
+            private final Class<?> elementType;
 
             private ComponentModel(final List<Type> typeParameters, final RecordComponent component, final int index) {
                 validateAnnotations(component, index);
@@ -739,7 +3218,7 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
                 this.fieldName = computeFieldName(component);
                 this.isNullable = !component.getType().isPrimitive();
                 this.classDesc = component.getType().isPrimitive() ?
-                        getClassDescForPrimitive(component.getType()) : ClassDesc.of(component.getType().getName());
+                        getClassDescForPrimitive(component.getType()) : ClassDesc.ofDescriptor(component.getType().descriptorString());
                 this.rawType = toWrapper(resolveComponentType(typeParameters, component));
                 this.typeArguments = (component.getGenericType() instanceof ParameterizedType parameterizedType)
                         ? resolveActualTypeArguments(typeParameters, component.getDeclaringRecord(), parameterizedType)
@@ -747,6 +3226,59 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
                 this.bsonRepresentationType = isAnnotationPresentOnField(component, BsonRepresentation.class)
                         ? getAnnotationOnField(component, BsonRepresentation.class).value()
                         : null;
+                this.isString = rawType == String.class;
+                this.unboxedClassDesc = !component.getType().isPrimitive() && toPrimitive(rawType) != null
+                        ? getClassDescForPrimitive(toPrimitive(rawType))
+                        : null;
+                this.isRecord = rawType.isRecord();
+                this.isPrimitiveArray = rawType == int[].class || rawType == long[].class || rawType == double[].class
+                        || rawType == byte[].class;
+                this.isEnum = rawType.isEnum();
+                var containerTypes = new ArrayList<Class<?>>();
+                var elementType = getContainerElementType(typeParameters, component, containerTypes);
+                this.containerTypes = elementType != null && bsonRepresentationType == null ? List.copyOf(containerTypes) : List.of();
+                this.elementType = this.containerTypes.isEmpty() ? null : elementType;
+                if ((unboxedClassDesc != null || isPrimitiveArray) && bsonRepresentationType != null) {
+                    // as for the registry's wrapper type codecs, which are not RepresentationConfigurable
+                    throw new CodecConfigurationException(format("Codec for %s must implement RepresentationConfigurable to support BsonRepresentation",
+                            rawType.getName()));
+                }
+                if (isString && bsonRepresentationType != null
+                        && bsonRepresentationType != BsonType.STRING && bsonRepresentationType != BsonType.OBJECT_ID) {
+                    throw new CodecConfigurationException(format("%s is not a supported representation for String component '%s' of record '%s'",
+                            bsonRepresentationType, component.getName(), component.getDeclaringRecord().getName()));
+                }
+            }
+
+            private boolean requiresCodec() {
+                return isNullable && !isString && unboxedClassDesc == null && !isPrimitiveArray;
+            }
+
+            private boolean hasElementHeader() {
+                return !requiresCodec() || isRecord || isEnum;
+            }
+
+            private boolean isContainer() {
+                return !containerTypes.isEmpty();
+            }
+
+            // Whether there is a field for a codec from the registry: the component's own, or for containers, their elements'
+            private boolean hasCodecField() {
+                return requiresCodec() && (!isContainer() || elementType.isRecord());
+            }
+
+            // Whether the codec from the registry is resolved on first use rather than by the constructor: for records,
+            // which may refer back to the record being encoded, and for the records in containers
+            private boolean isCodecResolvedLazily() {
+                return isRecord || isContainer();
+            }
+
+            private ClassDesc containerClassDesc(int depth) {
+                return ClassDesc.of(containerTypes.get(depth).getName());
+            }
+
+            private ClassDesc rawTypeClassDesc() {
+                return ClassDesc.ofDescriptor(rawType.descriptorString());
             }
 
             private static ClassDesc getClassDescForPrimitive(Class<?> type) {
@@ -793,6 +3325,55 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
                 }
             }
 
+            private static Class<?> toPrimitive(final Class<?> clazz) {
+                if (clazz == Integer.class) {
+                    return Integer.TYPE;
+                } else if (clazz == Long.class) {
+                    return Long.TYPE;
+                } else if (clazz == Boolean.class) {
+                    return Boolean.TYPE;
+                } else if (clazz == Byte.class) {
+                    return Byte.TYPE;
+                } else if (clazz == Character.class) {
+                    return Character.TYPE;
+                } else if (clazz == Float.class) {
+                    return Float.TYPE;
+                } else if (clazz == Double.class) {
+                    return Double.TYPE;
+                } else if (clazz == Short.class) {
+                    return Short.TYPE;
+                } else {
+                    return null;
+                }
+            }
+
+            /**
+             * Collects the types of nested List, Set and Map containers declared for the component, and returns the type of
+             * their innermost elements, or null if the component is not such a container or its elements are not supported.
+             */
+            private static Class<?> getContainerElementType(final List<Type> typeParameters, final RecordComponent component,
+                                                            final List<Class<?>> containerTypes) {
+                var recordClass = component.getDeclaringRecord();
+                var type = component.getGenericType();
+                while (type instanceof ParameterizedType parameterizedType) {
+                    var containerType = parameterizedType.getRawType();
+                    var typeArguments = resolveActualTypeArguments(typeParameters, recordClass, parameterizedType);
+                    if (containerType != List.class && containerType != Set.class
+                            && !(containerType == Map.class && typeArguments.get(0) == String.class)) {
+                        return null;
+                    }
+                    containerTypes.add((Class<?>) containerType);
+                    type = typeArguments.get(typeArguments.size() - 1);
+                }
+                if (containerTypes.isEmpty() || !(type instanceof Class<?> elementType)) {
+                    return null;
+                }
+                return elementType == String.class || toPrimitive(elementType) != null
+                        || (elementType.isRecord() && elementType.getTypeParameters().length == 0)
+                        ? elementType
+                        : null;
+            }
+
             private static Class<?> resolveComponentType(final List<Type> typeParameters, final RecordComponent component) {
                 Type resolvedType = resolveType(component.getGenericType(), typeParameters, component.getDeclaringRecord());
                 return resolvedType instanceof Class<?> clazz ? clazz : component.getType();
@@ -934,12 +3515,36 @@ public class GeneratedRecordCodecProvider implements CodecProvider {
             }
         }
 
-        private static class ByteArrayClassLoader extends ClassLoader {
-            public Class<?> defineClass(String name, byte[] b) {
-                return defineClass(name, b, 0, b.length);
+        /**
+         * A generated codec class, together with what is needed to create instances of it for a given registry.
+         */
+        static final class CodecClass<T> {
+            private final Class<?> codecClass;
+            private final MethodHandle constructor;
+            private final Map<String, List<Type>> typeArgumentsMap;
+
+            private CodecClass(final Class<?> codecClass, final MethodHandle constructor,
+                               final Map<String, List<Type>> typeArgumentsMap) {
+                this.codecClass = codecClass;
+                this.constructor = constructor;
+                this.typeArgumentsMap = typeArgumentsMap;
+            }
+
+            Class<?> getCodecClass() {
+                return codecClass;
             }
-        }
 
+            GeneratedRecordCodec<T> newCodec(final CodecRegistry registry) {
+                try {
+                    //noinspection unchecked
+                    return (GeneratedRecordCodec<T>) (GeneratedRecordCodec<?>) constructor.invokeExact(registry, typeArgumentsMap);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new RuntimeException(t);
+                }
+            }
+        }
     }
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonSerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import static java.lang.String.format;
+
+/**
+ * Decodes large batches of BSON documents that follow each other in a buffer, e.g. the result of a bulk read, on the
+ * threads of a {@link ForkJoinPool}.
+ *
+ * <p>The buffer is first scanned for the boundaries of the documents, using only their int32 length prefixes.  The documents
+ * are then split into contiguous ranges that are decoded in parallel with
+ * {@link GeneratedRecordCodec#decodeAll(ByteBuffer, java.util.function.Consumer)}, each range through its own input.
+ * Generated codecs are thread-safe, so a single codec decodes all the ranges.</p>
+ */
+public final class ParallelBatchDecoder {
+
+    // The number of ranges per thread of the pool, so that threads that finish early can steal the remaining ones
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Decodes the BSON documents from the buffer's position up to its limit in the common pool.
+     *
+     * @param codec the codec
+     * @param buffer the buffer
+     * @param generator a function that creates the array of decoded records, e.g. {@code Person[]::new}
+     * @param <T> the record type
+     * @return the decoded records, in the order of their documents
+     * @see #decodeAll(GeneratedRecordCodec, ByteBuffer, IntFunction, ForkJoinPool)
+     */
+    public static <T> T[] decodeAll(final GeneratedRecordCodec<T> codec, final ByteBuffer buffer,
+                                    final IntFunction<T[]> generator) {
+        return decodeAll(codec, buffer, generator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decodes the BSON documents from the buffer's position up to its limit in the given pool.
+     *
+     * <p>The buffer's position is advanced to its limit once all the documents are decoded.  If any of the documents can't
+     * be decoded, the exception is rethrown and the buffer's position is unchanged.  The buffer's byte order is ignored, and
+     * it is not otherwise modified.</p>
+     *
+     * @param codec the codec
+     * @param buffer the buffer
+     * @param generator a function that creates the array of decoded records, e.g. {@code Person[]::new}
+     * @param pool the pool to decode the documents in
+     * @param <T> the record type
+     * @return the decoded records, in the order of their documents
+     * @throws BsonSerializationException if the length of a document is invalid or exceeds the buffer
+     */
+    public static <T> T[] decodeAll(final GeneratedRecordCodec<T> codec, final ByteBuffer buffer,
+                                    final IntFunction<T[]> generator, final ForkJoinPool pool) {
+        var offsets = indexDocuments(buffer);
+        var count = offsets.length - 1;
+        var records = generator.apply(count);
+        if (count > 0) {
+            var threshold = Math.max(1, count / (pool.getParallelism() * RANGES_PER_THREAD));
+            pool.invoke(new DecodeAction<>(codec, buffer, offsets, records, 0, count, threshold));
+        }
+        buffer.position(buffer.limit());
+        return records;
+    }
+
+    /**
+     * Finds the boundaries of the documents from the buffer's position up to its limit.
+     *
+     * @param buffer the buffer
+     * @return the offsets of the documents in the buffer, followed by the limit of the buffer
+     */
+    static int[] indexDocuments(final ByteBuffer buffer) {
+        var littleEndianBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        var offsets = new int[16];
+        var count = 0;
+        var position = buffer.position();
+        var limit = buffer.limit();
+        while (position < limit) {
+            if (limit - position < 4) {
+                throw new BsonSerializationException(format(
+                        "Expected the length of a document at position %d, but only %d bytes remain", position, limit - position));
+            }
+            var length = littleEndianBuffer.getInt(position);
+            if (length < 5 || length > limit - position) {
+                throw new BsonSerializationException(format("Invalid length %d of the document at position %d", length, position));
+            }
+            if (count == offsets.length - 1) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = position;
+            position += length;
+        }
+        offsets[count] = limit;
+        return Arrays.copyOf(offsets, count + 1);
+    }
+
+    private static final class DecodeAction<T> extends RecursiveAction {
+        private final GeneratedRecordCodec<T> codec;
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final T[] records;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        DecodeAction(final GeneratedRecordCodec<T> codec, final ByteBuffer buffer, final int[] offsets, final T[] records,
+                     final int from, final int to, final int threshold) {
+            this.codec = codec;
+            this.buffer = buffer;
+            this.offsets = offsets;
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                var middle = (from + to) >>> 1;
+                invokeAll(new DecodeAction<>(codec, buffer, offsets, records, from, middle, threshold),
+                        new DecodeAction<>(codec, buffer, offsets, records, middle, to, threshold));
+                return;
+            }
+            var range = buffer.slice(offsets[from], offsets[to] - offsets[from]);
+            var index = new int[] {from};
+            codec.decodeAll(range, record -> records[index[0]++] = record);
+        }
+    }
+
+    private ParallelBatchDecoder() {
+    }
+}
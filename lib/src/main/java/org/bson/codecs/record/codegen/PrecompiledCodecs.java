@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.codecs.configuration.CodecConfigurationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Support for codec classes generated at build time by {@link RecordCodecCompiler}.
+ *
+ * <p>Precompiled codec classes are regular classes named after their record, and are listed by record class name in an
+ * index resource next to them.  The name of the index resource includes the codec format version, so codecs generated by
+ * an incompatible version of this library are ignored.</p>
+ */
+final class PrecompiledCodecs {
+    /**
+     * The resource listing the records annotated with {@link GenerateRecordCodec}, written by the annotation processor.
+     */
+    static final String RECORDS_RESOURCE = "META-INF/bson-record-codegen/records";
+
+    /**
+     * The resource listing the records that have a precompiled codec, written by {@link RecordCodecCompiler}.
+     */
+    static final String INDEX_RESOURCE = "META-INF/bson-record-codegen/codecs-v"
+            + GeneratedRecordCodecProvider.RecordCodecGenerator.CODEC_FORMAT_VERSION;
+
+    private static final Map<ClassLoader, Set<String>> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static String getCodecClassName(final Class<?> recordClass) {
+        return recordClass.getName() + "$$Codec";
+    }
+
+    static boolean isPrecompiled(final Class<?> recordClass) {
+        var classLoader = recordClass.getClassLoader();
+        if (classLoader == null) {
+            return false;
+        }
+        return indexes.computeIfAbsent(classLoader, PrecompiledCodecs::readIndex).contains(recordClass.getName());
+    }
+
+    static List<String> readNames(final InputStream inputStream) throws IOException {
+        var names = new ArrayList<String>();
+        try (var reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    names.add(line);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Set<String> readIndex(final ClassLoader classLoader) {
+        var names = new HashSet<String>();
+        try {
+            var resources = classLoader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                names.addAll(readNames(resource.openStream()));
+            }
+        } catch (IOException e) {
+            throw new CodecConfigurationException(format("Unable to read precompiled codec index %s", INDEX_RESOURCE), e);
+        }
+        return Set.copyOf(names);
+    }
+
+    private PrecompiledCodecs() {
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Generates record codec classes at build time, using the same generator as {@link GeneratedRecordCodecProvider} does at
+ * runtime.
+ *
+ * <p>For each record, the codec class is written to the output directory under the record's package, together with an
+ * index resource listing the records covered.  When the output directory is packaged with the records,
+ * {@link GeneratedRecordCodecProvider} loads these codecs instead of generating them.  Usage:</p>
+ *
+ * <pre>
+ *     java -cp &lt;classpath&gt; org.bson.codecs.record.codegen.RecordCodecCompiler \
+ *         --output &lt;directory&gt; [--records-file &lt;file&gt;]... [&lt;record class name&gt;]...
+ * </pre>
+ *
+ * <p>A records file lists one record class name per line, as written by the annotation processor for records annotated
+ * with {@link GenerateRecordCodec}.  The records and their component types must be on the class path.</p>
+ */
+public final class RecordCodecCompiler {
+
+    public static void main(final String[] args) throws IOException {
+        Path outputDirectory = null;
+        var recordClassNames = new LinkedHashSet<String>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--output" -> outputDirectory = Path.of(args[++i]);
+                case "--records-file" -> {
+                    try (var inputStream = Files.newInputStream(Path.of(args[++i]))) {
+                        recordClassNames.addAll(PrecompiledCodecs.readNames(inputStream));
+                    }
+                }
+                default -> recordClassNames.add(args[i]);
+            }
+        }
+        if (outputDirectory == null) {
+            throw new IllegalArgumentException("Missing required argument --output <directory>");
+        }
+        var result = compile(recordClassNames, Thread.currentThread().getContextClassLoader(), outputDirectory);
+        System.out.printf("Generated %d record codecs in %s%n", result.compiled().size(), outputDirectory);
+        for (var skipped : result.skippedGenericRecords()) {
+            System.out.printf("Skipped generic record %s, its codecs are generated at runtime%n", skipped);
+        }
+        for (var skipped : result.skippedPrivateRecords()) {
+            System.out.printf("Skipped private record %s, its codec is generated at runtime%n", skipped);
+        }
+    }
+
+    /**
+     * Generates codec classes for the given records.
+     *
+     * @param recordClassNames the binary names of the records
+     * @param classLoader the class loader to load the records from
+     * @param outputDirectory the class output directory to write the codec classes and the index to
+     * @return the names of the records for which a codec class was generated, and of those that were skipped
+     * @throws IOException if writing to the output directory fails
+     */
+    public static Result compile(final Collection<String> recordClassNames, final ClassLoader classLoader,
+                                 final Path outputDirectory) throws IOException {
+        var compiled = new ArrayList<String>();
+        var skippedGenericRecords = new ArrayList<String>();
+        var skippedPrivateRecords = new ArrayList<String>();
+        for (var recordClassName : recordClassNames) {
+            Class<?> recordClass;
+            try {
+                recordClass = Class.forName(recordClassName, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException(format("Record class %s is not on the class path", recordClassName), e);
+            }
+            if (!recordClass.isRecord()) {
+                throw new IllegalArgumentException(format("Class %s is not a record", recordClassName));
+            }
+            if (recordClass.getTypeParameters().length > 0) {
+                // Codecs for generic records depend on the type arguments they are used with, so they are generated at runtime
+                skippedGenericRecords.add(recordClassName);
+                continue;
+            }
+            if (Modifier.isPrivate(recordClass.getModifiers())) {
+                // The canonical constructor of a private record is private, and a precompiled codec is not a nestmate of the
+                // record, so only a hidden codec class defined in the record's lookup can call it
+                skippedPrivateRecords.add(recordClassName);
+                continue;
+            }
+
+            var bytes = GeneratedRecordCodecProvider.RecordCodecGenerator.generatePrecompiledCodecClass(recordClass);
+            var codecClassFile = outputDirectory.resolve(PrecompiledCodecs.getCodecClassName(recordClass).replace('.', '/') + ".class");
+            Files.createDirectories(codecClassFile.getParent());
+            Files.write(codecClassFile, bytes);
+            compiled.add(recordClassName);
+        }
+
+        var index = outputDirectory.resolve(PrecompiledCodecs.INDEX_RESOURCE);
+        Files.createDirectories(index.getParent());
+        var lines = new ArrayList<String>();
+        lines.add("# Records with codecs generated by " + RecordCodecCompiler.class.getName());
+        lines.addAll(compiled);
+        Files.write(index, lines, UTF_8);
+        return new Result(List.copyOf(compiled), List.copyOf(skippedGenericRecords), List.copyOf(skippedPrivateRecords));
+    }
+
+    /**
+     * The outcome of {@link #compile(Collection, ClassLoader, Path)}.
+     *
+     * @param compiled the names of the records for which a codec class was generated
+     * @param skippedGenericRecords the names of the generic records that were skipped, as their codecs depend on the type
+     *                              arguments they are used with and are generated at runtime
+     * @param skippedPrivateRecords the names of the private records that were skipped, as their canonical constructor is
+     *                              only accessible to a codec generated at runtime
+     */
+    public record Result(List<String> compiled, List<String> skippedGenericRecords, List<String> skippedPrivateRecords) {
+    }
+
+    private RecordCodecCompiler() {
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * The call site of a generated codec's call to the codec of a component, e.g. {@code Codec.encode} or
+ * {@code GeneratedRecordCodec.encodeTo}, which is bound to the class of the first codec it calls.
+ *
+ * <p>Generated codecs are hidden classes, so a codec class cannot name the codec class of a nested record in an
+ * {@code invokevirtual} instruction.  Instead, the call is an {@code invokedynamic} instruction whose first argument is the
+ * codec.  On its first call, the call site relinks itself once to check that the codec is of the same class, and to call the
+ * method of that class, which the JIT compiler can inline into the calling codec.  Codecs of other classes are called
+ * through the interface, without relinking again.</p>
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.</p>
+ */
+public final class CodecCallSite extends MutableCallSite {
+    private static final MethodHandle RELINK;
+    private static final MethodHandle HAS_CLASS;
+
+    static {
+        var lookup = MethodHandles.lookup();
+        try {
+            RELINK = lookup.findVirtual(CodecCallSite.class, "relink", MethodType.methodType(Object.class, Object[].class));
+            HAS_CLASS = lookup.findStatic(CodecCallSite.class, "hasClass",
+                    MethodType.methodType(boolean.class, Class.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle interfaceMethod;
+
+    /**
+     * Bootstraps an {@code invokedynamic} instruction that calls a method of the interface of its first argument.
+     *
+     * @param lookup the lookup of the calling codec class
+     * @param name the name of the method
+     * @param type the type of the call, whose first parameter is the interface, e.g. {@code Codec}
+     * @return the call site
+     * @throws NoSuchMethodException if the interface has no such method
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    public static CallSite bootstrap(final MethodHandles.Lookup lookup, final String name, final MethodType type)
+            throws NoSuchMethodException, IllegalAccessException {
+        var interfaceMethod = MethodHandles.publicLookup()
+                .findVirtual(type.parameterType(0), name, type.dropParameterTypes(0, 1));
+        return new CodecCallSite(type, interfaceMethod);
+    }
+
+    private CodecCallSite(final MethodType type, final MethodHandle interfaceMethod) {
+        super(type);
+        this.interfaceMethod = interfaceMethod;
+        setTarget(RELINK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+    }
+
+    private Object relink(final Object[] arguments) throws Throwable {
+        var codecClass = arguments[0].getClass();
+        var type = type();
+        var classMethod = interfaceMethod.asType(type.changeParameterType(0, codecClass)).asType(type);
+        var target = MethodHandles.guardWithTest(HAS_CLASS.bindTo(codecClass).asType(MethodType.methodType(boolean.class,
+                type.parameterType(0))), classMethod, interfaceMethod);
+        setTarget(target);
+        return target.invokeWithArguments(arguments);
+    }
+
+    private static boolean hasClass(final Class<?> codecClass, final Object codec) {
+        return codec.getClass() == codecClass;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A JDK Flight Recorder event for an encode or decode by a generated codec that takes longer than the event's threshold,
+ * 20 ms unless configured otherwise in the recording's settings.
+ *
+ * <p>Generated codecs wrap their public encode and decode methods with {@link #start(Object)} and
+ * {@link #finish(Object, Class, String)}.  When the event is not enabled, nothing else is done and the event object
+ * doesn't escape, so the JIT removes it.  Operations run by {@link StripedCodecMetrics#runUncounted(Runnable)} are not
+ * reported either: codecs with metrics pass whether the operation is counted, which they check once per operation, to
+ * {@link #finish(Object, Class, String, boolean)}, and other codecs only check it for operations that are slow enough
+ * to be reported.</p>
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.</p>
+ */
+@Name(CodecOperationEvent.NAME)
+@Label("Slow Record Codec Operation")
+@Category({"MongoDB", "BSON Record Codecs"})
+@Description("An encode or decode of a record by a generated codec that took longer than the threshold")
+@Threshold("20 ms")
+public final class CodecOperationEvent extends Event {
+    /**
+     * The name of the event.
+     */
+    public static final String NAME = "org.bson.codecs.record.codegen.CodecOperation";
+
+    @Label("Record Class")
+    private Class<?> recordClass;
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Document Size")
+    @Description("The size of the encoded or decoded document, or -1 if it is not known")
+    @DataAmount
+    private int documentSize;
+
+    // The position of the reader, writer or buffer at the start of the operation
+    private transient int startPosition;
+
+    // Whether the operation is timed
+    private transient boolean started;
+
+    /**
+     * Starts timing an operation.
+     *
+     * @param source the reader, writer or buffer that the operation reads from or writes to
+     * @return the event
+     */
+    public static CodecOperationEvent start(final Object source) {
+        var event = new CodecOperationEvent();
+        if (event.isEnabled()) {
+            event.startPosition = RawBsonHelper.getPosition(source);
+            event.started = true;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Finishes timing an operation, and commits the event if the operation took longer than the threshold, unless it is not
+     * counted.  Whether it is counted is only checked for such slow operations.
+     *
+     * @param source the reader, writer or buffer that the operation read from or wrote to
+     * @param recordClass the record class of the codec
+     * @param operation the name of the operation
+     */
+    public void finish(final Object source, final Class<?> recordClass, final String operation) {
+        if (started) {
+            end();
+            if (shouldCommit() && StripedCodecMetrics.isCounting()) {
+                commitOperation(source, recordClass, operation);
+            }
+        }
+    }
+
+    /**
+     * Finishes timing an operation that is counted or not, as its codec has already checked, and commits the event if
+     * the operation is counted and took longer than the threshold.
+     *
+     * @param source the reader, writer or buffer that the operation read from or wrote to
+     * @param recordClass the record class of the codec
+     * @param operation the name of the operation
+     * @param counting whether the operation is counted, as returned by {@link StripedCodecMetrics#isCounting()}
+     */
+    public void finish(final Object source, final Class<?> recordClass, final String operation, final boolean counting) {
+        if (started && counting) {
+            end();
+            if (shouldCommit()) {
+                commitOperation(source, recordClass, operation);
+            }
+        }
+    }
+
+    private void commitOperation(final Object source, final Class<?> recordClass, final String operation) {
+        var endPosition = RawBsonHelper.getPosition(source);
+        this.recordClass = recordClass;
+        this.operation = operation;
+        this.documentSize = startPosition >= 0 && endPosition >= 0 ? endPosition - startPosition : -1;
+        commit();
+    }
+}
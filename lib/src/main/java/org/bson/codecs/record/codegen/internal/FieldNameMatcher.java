@@ -0,0 +1,127 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.io.BsonInput;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Matches BSON element names read from a {@link BsonInput} against the field names of a record, without decoding them into
+ * strings.
+ *
+ * <p>The names are encoded to UTF-8 once, and the bytes of each element name are compared as they are read: first against
+ * the name expected next, and on a mismatch by walking a trie of all the names.</p>
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.  It is public only so that
+ * generated codecs, which live in the packages of their records, can use it.</p>
+ */
+public final class FieldNameMatcher {
+    private final byte[][] names;
+    private final Node root;
+    // the trie node reached after each prefix of each name, to continue from after a mismatch with the expected name
+    private final Node[][] prefixNodes;
+
+    /**
+     * Construct an instance.
+     *
+     * @param names the field names, indexed by the values returned from {@link #readName(BsonInput, int)}
+     */
+    public FieldNameMatcher(final String... names) {
+        this.names = new byte[names.length][];
+        this.root = new Node();
+        this.prefixNodes = new Node[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            var name = names[i].getBytes(UTF_8);
+            this.names[i] = name;
+            prefixNodes[i] = new Node[name.length + 1];
+            var node = root;
+            prefixNodes[i][0] = node;
+            for (int j = 0; j < name.length; j++) {
+                node = node.getOrAddChild(name[j]);
+                prefixNodes[i][j + 1] = node;
+            }
+            node.index = i;
+        }
+    }
+
+    /**
+     * Reads a BSON CString and returns the index of the matching name.
+     *
+     * @param input the input, positioned at the start of the element name
+     * @param expectedIndex the index of the name most likely to be read, which is compared first.  It may be out of range,
+     *                      e.g. after the last name has been read.
+     * @return the index of the name read, or -1 if it is not one of the names
+     */
+    public int readName(final BsonInput input, final int expectedIndex) {
+        if (expectedIndex < 0 || expectedIndex >= names.length) {
+            return readName(input, root, input.readByte());
+        }
+        var expected = names[expectedIndex];
+        for (int i = 0; ; i++) {
+            var b = input.readByte();
+            if (i == expected.length) {
+                return b == 0 ? expectedIndex : readName(input, prefixNodes[expectedIndex][i], b);
+            }
+            if (b != expected[i]) {
+                return readName(input, prefixNodes[expectedIndex][i], b);
+            }
+        }
+    }
+
+    // continues with the given byte after the name has matched up to the given node
+    private static int readName(final BsonInput input, final Node start, final byte first) {
+        var node = start;
+        var b = first;
+        while (b != 0) {
+            if (node != null) {
+                node = node.getChild(b);
+            }
+            b = input.readByte();
+        }
+        return node == null ? -1 : node.index;
+    }
+
+    private static final class Node {
+        private byte[] keys = new byte[0];
+        private Node[] children = new Node[0];
+        private int index = -1;
+
+        Node getChild(final byte key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(final byte key) {
+            var child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = key;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.internal.NumberCodecHelper;
+import org.bson.io.BsonInput;
+import org.bson.io.BsonOutput;
+
+import java.util.Arrays;
+
+/**
+ * Encoding and decoding of {@code int[]}, {@code long[]} and {@code double[]} components as BSON arrays, and of
+ * {@code byte[]} components as BSON binary values, for generated codecs.
+ *
+ * <p>Each kind of array can be read and written through a {@link BsonReader} or {@link BsonWriter}, or directly from a
+ * {@link BsonInput} or to a {@link BsonOutput}.  Arrays are always decoded into arrays of exactly the number of elements.
+ * Reading directly from an input only handles the common case, where every element has the BSON type that the array is
+ * written with, and otherwise returns null so that the caller can read the value through a reader instead.</p>
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.  It is public only so that
+ * generated codecs, which live in the packages of their records, can use it.</p>
+ */
+public final class PrimitiveArrays {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // the most elements allocated up front for an array read from an input, which are trusted less than its size
+    private static final int MAX_EXPECTED_LENGTH = 1 << 16;
+    // the size of the length and the terminating null byte of a document
+    private static final int DOCUMENT_OVERHEAD = 5;
+
+    /**
+     * Writes the values as a BSON array.
+     *
+     * @param writer the writer, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonWriter writer, final int[] values) {
+        writer.writeStartArray();
+        for (int value : values) {
+            writer.writeInt32(value);
+        }
+        writer.writeEndArray();
+    }
+
+    /**
+     * Writes the values as a BSON array.
+     *
+     * @param writer the writer, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonWriter writer, final long[] values) {
+        writer.writeStartArray();
+        for (long value : values) {
+            writer.writeInt64(value);
+        }
+        writer.writeEndArray();
+    }
+
+    /**
+     * Writes the values as a BSON array.
+     *
+     * @param writer the writer, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonWriter writer, final double[] values) {
+        writer.writeStartArray();
+        for (double value : values) {
+            writer.writeDouble(value);
+        }
+        writer.writeEndArray();
+    }
+
+    /**
+     * Writes the bytes as a BSON binary value of the generic subtype, as {@code ByteArrayCodec} does.
+     *
+     * @param writer the writer, positioned at the value
+     * @param value the bytes
+     */
+    public static void writeBinary(final BsonWriter writer, final byte[] value) {
+        writer.writeBinaryData(new BsonBinary(value));
+    }
+
+    /**
+     * Reads a BSON array of numbers that can be converted to an int without loss, as {@code IntegerCodec} does.
+     *
+     * @param reader the reader, positioned at the value
+     * @return the values
+     */
+    public static int[] readInt32Array(final BsonReader reader) {
+        reader.readStartArray();
+        var values = new int[INITIAL_CAPACITY];
+        int count = 0;
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = NumberCodecHelper.decodeInt(reader);
+        }
+        reader.readEndArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON array of numbers that can be converted to a long without loss, as {@code LongCodec} does.
+     *
+     * @param reader the reader, positioned at the value
+     * @return the values
+     */
+    public static long[] readInt64Array(final BsonReader reader) {
+        reader.readStartArray();
+        var values = new long[INITIAL_CAPACITY];
+        int count = 0;
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = NumberCodecHelper.decodeLong(reader);
+        }
+        reader.readEndArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON array of numbers that can be converted to a double without loss, as {@code DoubleCodec} does.
+     *
+     * @param reader the reader, positioned at the value
+     * @return the values
+     */
+    public static double[] readDoubleArray(final BsonReader reader) {
+        reader.readStartArray();
+        var values = new double[INITIAL_CAPACITY];
+        int count = 0;
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = NumberCodecHelper.decodeDouble(reader);
+        }
+        reader.readEndArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON binary value, as {@code ByteArrayCodec} does.
+     *
+     * @param reader the reader, positioned at the value
+     * @return the bytes
+     */
+    public static byte[] readBinary(final BsonReader reader) {
+        return reader.readBinaryData().getData();
+    }
+
+    /**
+     * Writes the values as a BSON array, with the same bytes as {@link #writeArray(BsonWriter, int[])}.
+     *
+     * @param output the output, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonOutput output, final int[] values) {
+        int start = output.getPosition();
+        output.writeInt32(0);
+        for (int i = 0; i < values.length; i++) {
+            writeElementHeader(output, BsonType.INT32, i);
+            output.writeInt32(values[i]);
+        }
+        writeEndOfArray(output, start);
+    }
+
+    /**
+     * Writes the values as a BSON array, with the same bytes as {@link #writeArray(BsonWriter, long[])}.
+     *
+     * @param output the output, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonOutput output, final long[] values) {
+        int start = output.getPosition();
+        output.writeInt32(0);
+        for (int i = 0; i < values.length; i++) {
+            writeElementHeader(output, BsonType.INT64, i);
+            output.writeInt64(values[i]);
+        }
+        writeEndOfArray(output, start);
+    }
+
+    /**
+     * Writes the values as a BSON array, with the same bytes as {@link #writeArray(BsonWriter, double[])}.
+     *
+     * @param output the output, positioned at the value
+     * @param values the values
+     */
+    public static void writeArray(final BsonOutput output, final double[] values) {
+        int start = output.getPosition();
+        output.writeInt32(0);
+        for (int i = 0; i < values.length; i++) {
+            writeElementHeader(output, BsonType.DOUBLE, i);
+            output.writeDouble(values[i]);
+        }
+        writeEndOfArray(output, start);
+    }
+
+    /**
+     * Writes the bytes as a BSON binary value, with the same bytes as {@link #writeBinary(BsonWriter, byte[])}.
+     *
+     * @param output the output, positioned at the value
+     * @param value the bytes
+     */
+    public static void writeBinary(final BsonOutput output, final byte[] value) {
+        output.writeInt32(value.length);
+        output.writeByte(BsonBinarySubType.BINARY.getValue());
+        output.writeBytes(value);
+    }
+
+    /**
+     * Reads a BSON array of int32 values directly from the input.
+     *
+     * @param input the input, positioned at the value
+     * @return the values, or null if an element is not an int32 value or the array is malformed, in which case the
+     * position of the input is undefined
+     */
+    public static int[] readInt32Array(final BsonInput input) {
+        int start = input.getPosition();
+        int size = input.readInt32();
+        if (size < DOCUMENT_OVERHEAD) {
+            return null;
+        }
+        var values = new int[getExpectedLength(size, 4)];
+        int count = 0;
+        byte bsonType;
+        while ((bsonType = input.readByte()) != 0) {
+            if (bsonType != BsonType.INT32.getValue()) {
+                return null;
+            }
+            input.skipCString();
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, count * 2));
+            }
+            values[count++] = input.readInt32();
+        }
+        if (input.getPosition() != start + size) {
+            return null;
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON array of int64 values directly from the input.
+     *
+     * @param input the input, positioned at the value
+     * @return the values, or null if an element is not an int64 value or the array is malformed, in which case the
+     * position of the input is undefined
+     */
+    public static long[] readInt64Array(final BsonInput input) {
+        int start = input.getPosition();
+        int size = input.readInt32();
+        if (size < DOCUMENT_OVERHEAD) {
+            return null;
+        }
+        var values = new long[getExpectedLength(size, 8)];
+        int count = 0;
+        byte bsonType;
+        while ((bsonType = input.readByte()) != 0) {
+            if (bsonType != BsonType.INT64.getValue()) {
+                return null;
+            }
+            input.skipCString();
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, count * 2));
+            }
+            values[count++] = input.readInt64();
+        }
+        if (input.getPosition() != start + size) {
+            return null;
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON array of double values directly from the input.
+     *
+     * @param input the input, positioned at the value
+     * @return the values, or null if an element is not a double value or the array is malformed, in which case the
+     * position of the input is undefined
+     */
+    public static double[] readDoubleArray(final BsonInput input) {
+        int start = input.getPosition();
+        int size = input.readInt32();
+        if (size < DOCUMENT_OVERHEAD) {
+            return null;
+        }
+        var values = new double[getExpectedLength(size, 8)];
+        int count = 0;
+        byte bsonType;
+        while ((bsonType = input.readByte()) != 0) {
+            if (bsonType != BsonType.DOUBLE.getValue()) {
+                return null;
+            }
+            input.skipCString();
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, count * 2));
+            }
+            values[count++] = input.readDouble();
+        }
+        if (input.getPosition() != start + size) {
+            return null;
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a BSON binary value directly from the input.
+     *
+     * @param input the input, positioned at the value
+     * @return the bytes, or null if the value has the old binary subtype or a negative size, in which case the position of
+     * the input is undefined
+     */
+    public static byte[] readBinary(final BsonInput input) {
+        int size = input.readInt32();
+        if (size < 0 || input.readByte() == BsonBinarySubType.OLD_BINARY.getValue()) {
+            return null;
+        }
+        var value = new byte[size];
+        input.readBytes(value);
+        return value;
+    }
+
+    /**
+     * Computes the size of the values encoded as a BSON array.
+     *
+     * @param values the values
+     * @return the size of the encoded value
+     */
+    public static int getValueSize(final int[] values) {
+        return getArraySize(values.length, 4);
+    }
+
+    /**
+     * Computes the size of the values encoded as a BSON array.
+     *
+     * @param values the values
+     * @return the size of the encoded value
+     */
+    public static int getValueSize(final long[] values) {
+        return getArraySize(values.length, 8);
+    }
+
+    /**
+     * Computes the size of the values encoded as a BSON array.
+     *
+     * @param values the values
+     * @return the size of the encoded value
+     */
+    public static int getValueSize(final double[] values) {
+        return getArraySize(values.length, 8);
+    }
+
+    /**
+     * Computes the size of the bytes encoded as a BSON binary value: their length, subtype and the bytes themselves.
+     *
+     * @param value the bytes
+     * @return the size of the encoded value
+     */
+    public static int getValueSize(final byte[] value) {
+        return value.length + 5;
+    }
+
+    // The size of an array of the given length whose values all have the given size
+    private static int getArraySize(final int length, final int valueSize) {
+        int size = DOCUMENT_OVERHEAD;
+        int digits = 1;
+        for (int start = 0, end = 10; start < length; start = end, end *= 10, digits++) {
+            // the type, the index as a CString and the value of each element with this many digits in its index
+            size += (Math.min(end, length) - start) * (digits + 2 + valueSize);
+            if (end > Integer.MAX_VALUE / 10) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    // The number of elements in an array of the given size whose values all have the given size, as written by
+    // BsonWriter, so that arrays read from an input are usually allocated with the right length to begin with.  The
+    // size has not been checked against the input yet, so it is capped.
+    private static int getExpectedLength(final int size, final int valueSize) {
+        int remaining = size - DOCUMENT_OVERHEAD;
+        int length = 0;
+        int digits = 1;
+        for (int start = 0, end = 10; remaining > 0; start = end, end *= 10, digits++) {
+            int elementSize = digits + 2 + valueSize;
+            int elements = Math.min(end - start, remaining / elementSize);
+            length += elements;
+            remaining -= elements * elementSize;
+            if (elements < end - start || end > Integer.MAX_VALUE / 10) {
+                break;
+            }
+        }
+        return Math.min(length, MAX_EXPECTED_LENGTH);
+    }
+
+    private static void writeElementHeader(final BsonOutput output, final BsonType bsonType, final int index) {
+        output.writeByte(bsonType.getValue());
+        writeDigits(output, index);
+        output.writeByte(0);
+    }
+
+    private static void writeDigits(final BsonOutput output, final int value) {
+        if (value >= 10) {
+            writeDigits(output, value / 10);
+        }
+        output.writeByte('0' + value % 10);
+    }
+
+    private static void writeEndOfArray(final BsonOutput output, final int start) {
+        output.writeByte(0);
+        output.writeInt32(start, output.getPosition() - start);
+    }
+
+    private PrimitiveArrays() {
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonSerializationException;
+import org.bson.BsonType;
+import org.bson.ByteBufNIO;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.record.codegen.GeneratedRecordCodec;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.io.BsonInput;
+import org.bson.io.BsonInputMark;
+import org.bson.io.BsonOutput;
+import org.bson.io.ByteBufferBsonInput;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Helpers for generated codecs that read BSON values directly from their binary representation.
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.</p>
+ */
+public final class RawBsonHelper {
+
+    /**
+     * The decoder context for components decoded with a codec from the registry, the same as the child context used by
+     * {@code DecoderContext.decodeWithChildContext}.
+     */
+    public static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    /**
+     * The encoder context for components encoded through a writer when a record is encoded directly to a buffer.
+     */
+    public static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    /**
+     * The extract methods of generated codec classes, not yet bound to a codec, per codec class and then per component name.
+     */
+    private static final ClassValue<ConcurrentMap<String, MethodHandle>> EXTRACTORS = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, MethodHandle> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Encodes the header of a BSON element: its type, followed by its name as a CString.
+     *
+     * @param bsonType the type of the element
+     * @param name the name of the element
+     * @return the encoded header
+     */
+    public static byte[] getElementHeader(final BsonType bsonType, final String name) {
+        var nameBytes = name.getBytes(UTF_8);
+        var header = new byte[nameBytes.length + 2];
+        header[0] = (byte) bsonType.getValue();
+        System.arraycopy(nameBytes, 0, header, 1, nameBytes.length);
+        return header;
+    }
+
+    /**
+     * Encodes the names of the constants of an enum as BSON string values, as {@code EnumCodec} writes them.
+     *
+     * @param enumClass the enum class
+     * @return the encoded values, indexed by ordinal
+     */
+    public static byte[][] getEnumValues(final Class<? extends Enum<?>> enumClass) {
+        var constants = enumClass.getEnumConstants();
+        var values = new byte[constants.length][];
+        for (var constant : constants) {
+            var buffer = new BasicOutputBuffer();
+            buffer.writeString(constant.name());
+            values[constant.ordinal()] = buffer.toByteArray();
+        }
+        return values;
+    }
+
+    /**
+     * Computes the size of the header of a BSON element: its type, followed by its name as a CString.
+     *
+     * @param name the name of the element
+     * @return the size of the header
+     */
+    public static int getElementHeaderSize(final String name) {
+        return getUtf8Size(name) + 2;
+    }
+
+    /**
+     * Computes the size of the header of an element of a BSON array, whose name is its index.
+     *
+     * @param index the index of the element
+     * @return the size of the header
+     */
+    public static int getElementHeaderSize(final int index) {
+        int digits = 1;
+        for (int i = index; i >= 10; i /= 10) {
+            digits++;
+        }
+        return digits + 2;
+    }
+
+    /**
+     * Computes the size of a BSON string value: its length, its UTF-8 bytes and the terminating null byte.  Unpaired
+     * surrogates count as three bytes, as they are encoded by {@code OutputBuffer.writeString}.
+     *
+     * @param value the string
+     * @return the size of the encoded value
+     */
+    public static int getStringValueSize(final String value) {
+        return getUtf8Size(value) + 5;
+    }
+
+    private static int getUtf8Size(final String value) {
+        int size = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Computes the size of a BSON string value holding a single character.
+     *
+     * @param value the character
+     * @return the size of the encoded value
+     * @see #getStringValueSize(String)
+     */
+    public static int getStringValueSize(final char value) {
+        return value < 0x80 ? 6 : value < 0x800 ? 7 : 8;
+    }
+
+    /**
+     * Computes the size of a BSON value encoded by a codec from the registry.  Records with a generated codec compute their
+     * size directly, while other values are encoded into a scratch buffer.
+     *
+     * @param encoder the encoder of the value
+     * @param value the value
+     * @return the size of the encoded value, without the type and name of its element
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int getValueSize(final Encoder encoder, final Object value) {
+        if (encoder instanceof GeneratedRecordCodec generatedRecordCodec) {
+            return generatedRecordCodec.sizeOf(value);
+        }
+        // Encode the value as the only element of a document with an empty name, which adds seven bytes: the length of the
+        // document, the type and the empty name of the element, and the terminating null byte of the document
+        try (var writer = new BsonBinaryWriter(new BasicOutputBuffer())) {
+            writer.writeStartDocument();
+            writer.writeName("");
+            ENCODER_CONTEXT.encodeWithChildContext(encoder, writer, value);
+            writer.writeEndDocument();
+            return writer.getBsonOutput().getPosition() - 7;
+        }
+    }
+
+    /**
+     * Finds the method that a generated codec extracts the value of a component with, and binds it to the codec.  The
+     * methods are only looked up once per codec class and component.
+     *
+     * @param lookup a lookup in the codec class
+     * @param codec the codec
+     * @param componentName the name of the component
+     * @return the extractor for {@link GeneratedRecordCodec#getExtractor(String)}
+     */
+    public static MethodHandle getExtractor(final MethodHandles.Lookup lookup, final GeneratedRecordCodec<?> codec,
+                                            final String componentName) {
+        return EXTRACTORS.get(lookup.lookupClass())
+                .computeIfAbsent(componentName, name -> findExtractor(lookup, codec, name))
+                .bindTo(codec);
+    }
+
+    private static MethodHandle findExtractor(final MethodHandles.Lookup lookup, final GeneratedRecordCodec<?> codec,
+                                              final String componentName) {
+        var methodName = "extract$" + componentName;
+        for (var method : lookup.lookupClass().getDeclaredMethods()) {
+            if (method.getName().equals(methodName)) {
+                try {
+                    return lookup.unreflect(method);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        throw new IllegalArgumentException(format("'%s' is not a component of record '%s'", componentName,
+                codec.getEncoderClass().getName()));
+    }
+
+    /**
+     * Creates an input over the bytes of the buffer, starting at its position, without changing the buffer.
+     *
+     * @param buffer the buffer
+     * @return the input
+     */
+    public static BsonInput toBsonInput(final ByteBuffer buffer) {
+        return new ByteBufferBsonInput(new ByteBufNIO(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)));
+    }
+
+    /**
+     * Gets the position of the reader, writer or buffer that a generated codec reads from or writes to, to measure the size
+     * of a document.
+     *
+     * @param source the reader, writer or buffer
+     * @return the position, or -1 if the source does not read from or write to bytes
+     */
+    public static int getPosition(final Object source) {
+        if (source instanceof BsonBinaryReader reader) {
+            return reader.getBsonInput().getPosition();
+        } else if (source instanceof BsonBinaryWriter writer) {
+            return writer.getBsonOutput().getPosition();
+        } else if (source instanceof BsonOutput output) {
+            return output.getPosition();
+        } else if (source instanceof ByteBuffer buffer) {
+            return buffer.position();
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the input to a position that it has already read, without taking a mark for it: the input is reset to an
+     * earlier mark and skips forward to the position.
+     *
+     * @param input the input
+     * @param mark a mark of the input at or before the position
+     * @param position the position
+     */
+    public static void setPosition(final BsonInput input, final BsonInputMark mark, final int position) {
+        mark.reset();
+        input.skip(position - input.getPosition());
+    }
+
+    /**
+     * Checks that the input is at the end of a document read directly from it, as {@code BsonBinaryReader} does.
+     *
+     * @param input the input, positioned after the terminating null byte of the document
+     * @param documentEnd the position of the end of the document according to its size
+     */
+    public static void checkEndOfDocument(final BsonInput input, final int documentEnd) {
+        if (input.getPosition() != documentEnd) {
+            throw new BsonSerializationException(format("Expected the document to end at position %d, but it ended at %d",
+                    documentEnd, input.getPosition()));
+        }
+    }
+
+    /**
+     * Skips a BSON value directly in the input, as {@code BsonBinaryReader.skipValue} does.
+     *
+     * @param input the input, positioned at the value
+     * @param bsonType the type of the value, as read from the input
+     */
+    public static void skipValue(final BsonInput input, final int bsonType) {
+        var type = BsonType.findByValue(bsonType & 0xFF);
+        if (type == null) {
+            throw new BsonSerializationException(format("Unexpected BSON type 0x%02x while skipping a value", bsonType & 0xFF));
+        }
+        switch (type) {
+            case ARRAY, DOCUMENT, JAVASCRIPT_WITH_SCOPE -> input.skip(input.readInt32() - 4);
+            case BINARY -> input.skip(input.readInt32() + 1);
+            case BOOLEAN -> input.skip(1);
+            case DATE_TIME, DOUBLE, INT64, TIMESTAMP -> input.skip(8);
+            case INT32 -> input.skip(4);
+            case DECIMAL128 -> input.skip(16);
+            case JAVASCRIPT, STRING, SYMBOL -> input.skip(input.readInt32());
+            case OBJECT_ID -> input.skip(12);
+            case REGULAR_EXPRESSION -> {
+                input.skipCString();
+                input.skipCString();
+            }
+            case DB_POINTER -> input.skip(input.readInt32() + 12);
+            default -> {
+                // MIN_KEY, MAX_KEY, NULL and UNDEFINED have no value
+            }
+        }
+    }
+
+    /**
+     * Reads a BSON boolean value, validating it as {@code BsonBinaryReader} does.
+     *
+     * @param input the input, positioned at the value
+     * @return the value
+     */
+    public static boolean readBoolean(final BsonInput input) {
+        var b = input.readByte();
+        if (b != 0 && b != 1) {
+            throw new BsonSerializationException(format("Expected a boolean value but found %d", b));
+        }
+        return b == 1;
+    }
+
+    private RawBsonHelper() {
+    }
+}
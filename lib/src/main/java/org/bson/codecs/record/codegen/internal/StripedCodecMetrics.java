@@ -0,0 +1,268 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.codecs.record.codegen.CodecMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The implementation of {@link CodecMetrics} that generated codecs with metrics count into, held in a static final field
+ * of the codec class.
+ *
+ * <p>Generated encode and decode methods get a start time with {@link #startTime()} and the position of their reader,
+ * writer or buffer with {@link RawBsonHelper#getPosition(Object)}, and pass both to {@link #encoded(Object, int, long)} or
+ * {@link #decoded(Object, int, long)} when they are done.</p>
+ *
+ * <p>Operations run by {@link #runUncounted(Runnable)}, such as the round trips that warm up codecs, are not counted.
+ * Generated encode and decode methods check {@link #isCounting()} once per operation, and run operations that are not
+ * counted on a copy of the codec that counts into {@link #UNCOUNTED} instead, so that the counters themselves don't check
+ * anything.</p>
+ *
+ * <p>This class is not part of the public API and may be removed or changed at any time.</p>
+ */
+public final class StripedCodecMetrics implements CodecMetrics {
+    /**
+     * The start time of an operation whose latency is not measured.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * The metrics that operations which are not counted count into, and which are never read.
+     */
+    public static final StripedCodecMetrics UNCOUNTED = new StripedCodecMetrics(Record.class, "uncounted");
+
+    private static final int BUCKET_COUNT = Long.SIZE;
+
+    // Whether the operations of the current thread are counted
+    private static final ThreadLocal<Boolean> COUNTING = ThreadLocal.withInitial(() -> true);
+
+    private final Class<?> recordClass;
+    private final String description;
+    private final int latencySampleInterval;
+    private final LongAdder documentsEncoded = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+    private final LongAdder documentsDecoded = new LongAdder();
+    private final LongAdder bytesDecoded = new LongAdder();
+    private final LongAdder unknownFieldsSkipped = new LongAdder();
+    private final LongAdder nullsRead = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+    // Sampled operations are rare enough that the buckets don't need to be striped
+    private final AtomicLongArray encodeLatencies;
+    private final AtomicLongArray decodeLatencies;
+
+    /**
+     * Creates the metrics of a codec class, with latency histograms if the
+     * {@value CodecMetrics#LATENCY_SAMPLE_INTERVAL_PROPERTY} system property is set.
+     *
+     * @param recordClass the record class
+     * @param description the description of the codec
+     */
+    public StripedCodecMetrics(final Class<?> recordClass, final String description) {
+        this.recordClass = recordClass;
+        this.description = description;
+        this.latencySampleInterval = Integer.getInteger(LATENCY_SAMPLE_INTERVAL_PROPERTY, 0);
+        this.encodeLatencies = latencySampleInterval > 0 ? new AtomicLongArray(BUCKET_COUNT) : null;
+        this.decodeLatencies = latencySampleInterval > 0 ? new AtomicLongArray(BUCKET_COUNT) : null;
+    }
+
+    /**
+     * Runs an action on the current thread without counting the operations of codecs into their metrics, or reporting them
+     * as {@link CodecOperationEvent}s.
+     *
+     * @param action the action
+     */
+    public static void runUncounted(final Runnable action) {
+        if (!isCounting()) {
+            action.run();
+            return;
+        }
+        COUNTING.set(false);
+        try {
+            action.run();
+        } finally {
+            COUNTING.remove();
+        }
+    }
+
+    /**
+     * Gets whether the operations of codecs on the current thread are counted.  Generated codecs call this once per
+     * encode or decode, rather than once per counter.
+     *
+     * @return false while an action is run by {@link #runUncounted(Runnable)}
+     */
+    public static boolean isCounting() {
+        return COUNTING.get();
+    }
+
+    /**
+     * Gets the start time of an operation, if its latency is sampled.
+     *
+     * @return the value of {@link System#nanoTime()}, or {@link #NOT_SAMPLED}
+     */
+    public long startTime() {
+        if (latencySampleInterval > 0 && ThreadLocalRandom.current().nextInt(latencySampleInterval) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    /**
+     * Counts an encoded document.
+     *
+     * @param target the writer or buffer that the document was written to
+     * @param startPosition the position of the target before the document was written, or -1 if it is not known
+     * @param startTime the start time of the operation
+     */
+    public void encoded(final Object target, final int startPosition, final long startTime) {
+        documentsEncoded.increment();
+        addBytes(bytesEncoded, target, startPosition);
+        recordLatency(encodeLatencies, startTime);
+    }
+
+    /**
+     * Counts a decoded document.
+     *
+     * @param source the reader or buffer that the document was read from
+     * @param startPosition the position of the source before the document was read, or -1 if it is not known
+     * @param startTime the start time of the operation
+     */
+    public void decoded(final Object source, final int startPosition, final long startTime) {
+        documentsDecoded.increment();
+        addBytes(bytesDecoded, source, startPosition);
+        recordLatency(decodeLatencies, startTime);
+    }
+
+    /**
+     * Counts an element that was skipped because it is not the element of any component.
+     */
+    public void unknownFieldSkipped() {
+        unknownFieldsSkipped.increment();
+    }
+
+    /**
+     * Counts a null value that was read.
+     */
+    public void nullRead() {
+        nullsRead.increment();
+    }
+
+    /**
+     * Counts a decode that failed.
+     */
+    public void decodeFailed() {
+        decodeFailures.increment();
+    }
+
+    @Override
+    public Class<?> getRecordClass() {
+        return recordClass;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public long getDocumentsEncoded() {
+        return documentsEncoded.sum();
+    }
+
+    @Override
+    public long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    @Override
+    public long getDocumentsDecoded() {
+        return documentsDecoded.sum();
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return bytesDecoded.sum();
+    }
+
+    @Override
+    public long getUnknownFieldsSkipped() {
+        return unknownFieldsSkipped.sum();
+    }
+
+    @Override
+    public long getNullsRead() {
+        return nullsRead.sum();
+    }
+
+    @Override
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    @Override
+    public long[] getEncodeLatencies() {
+        return snapshot(encodeLatencies);
+    }
+
+    @Override
+    public long[] getDecodeLatencies() {
+        return snapshot(decodeLatencies);
+    }
+
+    @Override
+    public String toString() {
+        return "CodecMetrics{"
+                + "description='" + description + '\''
+                + ", documentsEncoded=" + getDocumentsEncoded()
+                + ", bytesEncoded=" + getBytesEncoded()
+                + ", documentsDecoded=" + getDocumentsDecoded()
+                + ", bytesDecoded=" + getBytesDecoded()
+                + ", unknownFieldsSkipped=" + getUnknownFieldsSkipped()
+                + ", nullsRead=" + getNullsRead()
+                + ", decodeFailures=" + getDecodeFailures()
+                + '}';
+    }
+
+    private static void addBytes(final LongAdder bytes, final Object source, final int startPosition) {
+        if (startPosition >= 0) {
+            var endPosition = RawBsonHelper.getPosition(source);
+            if (endPosition >= startPosition) {
+                bytes.add(endPosition - startPosition);
+            }
+        }
+    }
+
+    private static void recordLatency(final AtomicLongArray latencies, final long startTime) {
+        if (startTime != NOT_SAMPLED) {
+            var nanos = Math.max(System.nanoTime() - startTime, 1);
+            latencies.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos));
+        }
+    }
+
+    private static long[] snapshot(final AtomicLongArray latencies) {
+        if (latencies == null) {
+            return null;
+        }
+        var counts = new long[latencies.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = latencies.get(i);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonSerializationException;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BsonFileTest {
+
+    @TempDir
+    Path directory;
+
+    @SuppressWarnings("unchecked")
+    private final GeneratedRecordCodec<TestRecordWithCollections> codec =
+            (GeneratedRecordCodec<TestRecordWithCollections>) CodecRegistries.fromProviders(
+                    DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider()).get(TestRecordWithCollections.class);
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        var path = directory.resolve("records.bson");
+        var records = createRecords(100);
+
+        try (var writer = BsonFileWriter.create(path, codec)) {
+            for (var record : records.subList(0, 60)) {
+                writer.write(record);
+            }
+        }
+        try (var writer = BsonFileWriter.append(path, codec)) {
+            for (var record : records.subList(60, 100)) {
+                writer.write(record);
+            }
+        }
+
+        assertArrayEquals(encode(records), Files.readAllBytes(path));
+        assertEquals(records, readAll(path));
+    }
+
+    @Test
+    void testWriteWithSmallBuffer() throws IOException {
+        var path = directory.resolve("records.bson");
+        var records = createRecords(20);
+
+        // the buffer is flushed before most documents, and grows to fit the first one
+        try (var writer = new BsonFileWriter<>(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                codec, 16)) {
+            for (var record : records) {
+                writer.write(record);
+            }
+        }
+
+        assertArrayEquals(encode(records), Files.readAllBytes(path));
+    }
+
+    @Test
+    void testWriteDiscardsRecordThatCannotBeEncoded() throws IOException {
+        var path = directory.resolve("records.bson");
+        var records = createRecords(2);
+
+        try (var writer = BsonFileWriter.create(path, codec)) {
+            writer.write(records.get(0));
+            // the null key of the map fails after part of the document is written
+            var invalid = new TestRecordWithCollections(List.of("a"), Set.of(), new HashMap<>(Map.of("pi", 3.14)),
+                    List.of(), List.of());
+            invalid.doubles().put(null, 1.0);
+            assertThrows(RuntimeException.class, () -> writer.write(invalid));
+            writer.write(records.get(1));
+        }
+
+        assertEquals(records, readAll(path));
+    }
+
+    @Test
+    void testReadEmptyFile() throws IOException {
+        var path = Files.createFile(directory.resolve("empty.bson"));
+
+        try (var reader = BsonFileReader.open(path, codec)) {
+            assertFalse(reader.hasNext());
+            assertThrows(NoSuchElementException.class, reader::next);
+        }
+    }
+
+    @Test
+    void testReadInvalidLength() throws IOException {
+        var path = directory.resolve("truncated.bson");
+        var bytes = encode(createRecords(2));
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        try (var reader = BsonFileReader.open(path, codec)) {
+            reader.next();
+            var position = reader.getPosition();
+            assertThrows(BsonSerializationException.class, reader::next);
+            assertEquals(position, reader.getPosition());
+        }
+    }
+
+    private List<TestRecordWithCollections> createRecords(final int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new TestRecordWithCollections(List.of("s" + i), Set.of(i), Map.of("d" + i, i * 0.5),
+                        List.of(List.of((char) ('a' + i % 26))), List.of(Map.of("e", new TestRecordEmbedded("name" + i)))))
+                .toList();
+    }
+
+    private byte[] encode(final List<TestRecordWithCollections> records) {
+        var buffer = new BasicOutputBuffer();
+        for (var record : records) {
+            codec.encodeTo(buffer, record);
+        }
+        return buffer.toByteArray();
+    }
+
+    private List<TestRecordWithCollections> readAll(final Path path) throws IOException {
+        var records = new ArrayList<TestRecordWithCollections>();
+        try (var reader = BsonFileReader.open(path, codec)) {
+            reader.forEachRemaining(records::add);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class CodecClassCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final CodecRegistry registry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider());
+
+    private final BsonDocument document = new BsonDocument("id", new BsonString("42")).append("val", new BsonInt32(1));
+
+    @Test
+    void testCodecClassIsStored() throws IOException {
+        var cache = new CodecClassCache(directory);
+        var generator = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of());
+
+        var codec = generator.defineCodecClass(cache).newCodec(registry);
+
+        assertEquals(new SimpleRecord("42", 1), codec.decode(ByteBuffer.wrap(toBytes(document))));
+        assertTrue(Files.isRegularFile(cache.getPath(CodecClassCache.getKey(SimpleRecord.class, generator.getShape()))));
+    }
+
+    @Test
+    void testCodecClassIsLoaded() throws IOException {
+        // cache the bytes of a projection codec under the key of the full codec, to tell loaded classes from generated ones
+        var projectionCache = new CodecClassCache(directory.resolve("projection"));
+        var projectionGenerator = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, Set.of("id"));
+        projectionGenerator.defineCodecClass(projectionCache);
+        var projectionBytes = projectionCache.load(CodecClassCache.getKey(SimpleRecord.class, projectionGenerator.getShape()));
+
+        var cache = new CodecClassCache(directory);
+        var generator = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of());
+        cache.store(CodecClassCache.getKey(SimpleRecord.class, generator.getShape()), projectionBytes);
+
+        var codec = generator.defineCodecClass(cache).newCodec(registry);
+
+        assertEquals(new SimpleRecord("42", null), codec.decode(ByteBuffer.wrap(toBytes(document))));
+    }
+
+    @Test
+    void testInvalidCodecClassIsGeneratedAgain() throws IOException {
+        var cache = new CodecClassCache(directory);
+        var generator = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of());
+        var path = cache.getPath(CodecClassCache.getKey(SimpleRecord.class, generator.getShape()));
+        var invalidBytes = new byte[] {(byte) 0xCA, (byte) 0xFE};
+        cache.store(CodecClassCache.getKey(SimpleRecord.class, generator.getShape()), invalidBytes);
+
+        var codec = generator.defineCodecClass(cache).newCodec(registry);
+
+        assertEquals(new SimpleRecord("42", 1), codec.decode(ByteBuffer.wrap(toBytes(document))));
+        assertNotEquals(invalidBytes.length, Files.size(path));
+    }
+
+    @Test
+    void testModifiedCodecClassIsNotLoaded() throws IOException {
+        var cache = new CodecClassCache(directory);
+        var key = CodecClassCache.getKey(SimpleRecord.class, "shape");
+        cache.store(key, new byte[] {1, 2, 3});
+        assertArrayEquals(new byte[] {1, 2, 3}, cache.load(key));
+
+        var entry = Files.readAllBytes(cache.getPath(key));
+        entry[entry.length - 1]++;
+        Files.write(cache.getPath(key), entry);
+
+        assertNull(cache.load(key));
+    }
+
+    @Test
+    void testDirectoryCreatedByTheCacheIsUsed() {
+        var cacheDirectory = directory.resolve("parent").resolve("cache");
+        var key = CodecClassCache.getKey(SimpleRecord.class, "shape");
+        var userName = System.getProperty("user.name");
+        // the owner of the directory is not looked up by the user's name, which may not map to a user, e.g. in containers
+        System.setProperty("user.name", "no-such-user");
+        try {
+            var cache = new CodecClassCache(cacheDirectory);
+            assertNull(cache.load(key));
+
+            cache.store(key, new byte[] {1, 2, 3});
+
+            assertArrayEquals(new byte[] {1, 2, 3}, cache.load(key));
+            assertArrayEquals(new byte[] {1, 2, 3}, new CodecClassCache(cacheDirectory).load(key));
+        } finally {
+            System.setProperty("user.name", userName);
+        }
+    }
+
+    @Test
+    void testDirectoryAccessibleToOthersIsNotUsed() throws IOException {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        var key = CodecClassCache.getKey(SimpleRecord.class, "shape");
+        new CodecClassCache(directory.resolve("cache")).store(key, new byte[] {1, 2, 3});
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.resolve("cache"))));
+
+        // the directory is checked once, the first time that a cache finds it
+        Files.setPosixFilePermissions(directory.resolve("cache"), PosixFilePermissions.fromString("rwxrwxrwx"));
+        var cache = new CodecClassCache(directory.resolve("cache"));
+
+        assertNull(cache.load(key));
+        cache.store(CodecClassCache.getKey(SimpleRecord.class, "other shape"), new byte[] {1, 2, 3});
+        assertTrue(Files.notExists(cache.getPath(CodecClassCache.getKey(SimpleRecord.class, "other shape"))));
+    }
+
+    @Test
+    void testShape() {
+        var shape = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(TestRecordParameterized.class,
+                List.of(Integer.class, String.class)).getShape();
+
+        assertEquals(shape, new GeneratedRecordCodecProvider.RecordCodecGenerator<>(TestRecordParameterized.class,
+                List.of(Integer.class, String.class)).getShape());
+        assertNotEquals(shape, new GeneratedRecordCodecProvider.RecordCodecGenerator<>(TestRecordParameterized.class,
+                List.of(Long.class, String.class)).getShape());
+        assertNotEquals(new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of()).getShape(),
+                new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, Set.of("id")).getShape());
+    }
+
+    private static byte[] toBytes(final BsonDocument document) {
+        var outputBuffer = new BasicOutputBuffer();
+        new BsonDocumentCodec().encode(new BsonBinaryWriter(outputBuffer), document, EncoderContext.builder().build());
+        return outputBuffer.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.record.codegen.internal.CodecOperationEvent;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CodecEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEvents() throws IOException {
+        var provider = new GeneratedRecordCodecProvider();
+        var registry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+        var record = new TestRecordWithPrimitives(1, 2, 3, 4, 5.0, true, 6.0, false);
+        List<RecordedEvent> events;
+        int documentSize;
+        try (var recording = new Recording()) {
+            recording.enable(CodecGenerationEvent.NAME);
+            recording.enable(CodecOperationEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+
+            // a projection that no other test uses, so that its class is generated here
+            var codec = provider.getProjection(TestRecordWithPrimitives.class, Set.of("i1", "l2", "b2"), registry);
+            var outputBuffer = new BasicOutputBuffer();
+            codec.encodeTo(outputBuffer, record);
+            documentSize = outputBuffer.getSize();
+            codec.decode(ByteBuffer.wrap(outputBuffer.toByteArray()));
+
+            recording.stop();
+            var file = directory.resolve("events.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        var generationEvent = events.stream()
+                .filter(event -> event.getEventType().getName().equals(CodecGenerationEvent.NAME))
+                .filter(event -> "[b2, i1, l2]".equals(event.getString("decodedComponents")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(TestRecordWithPrimitives.class.getName(), generationEvent.getClass("recordClass").getName());
+        assertTrue(generationEvent.getInt("bytecodeSize") > 0);
+        assertFalse(generationEvent.getBoolean("cacheHit"));
+
+        var operationEvents = events.stream()
+                .filter(event -> event.getEventType().getName().equals(CodecOperationEvent.NAME))
+                .filter(event -> event.getClass("recordClass").getName().equals(TestRecordWithPrimitives.class.getName()))
+                .toList();
+        assertEquals(List.of("encodeTo", "decode"), operationEvents.stream().map(event -> event.getString("operation")).toList());
+        for (var operationEvent : operationEvents) {
+            assertEquals(documentSize, operationEvent.getInt("documentSize"));
+        }
+    }
+}
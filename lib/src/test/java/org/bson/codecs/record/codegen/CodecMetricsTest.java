@@ -0,0 +1,181 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonSerializationException;
+import org.bson.BsonString;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.record.codegen.internal.StripedCodecMetrics;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CodecMetricsTest {
+
+    private final CodecRegistry registry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider());
+
+    // a null value for the val component, and an element that is not a component
+    private final BsonDocument document = new BsonDocument("id", new BsonString("42"))
+            .append("val", BsonNull.VALUE)
+            .append("unknown", new BsonInt32(1));
+
+    @Test
+    void testMetricsAreDisabledByDefault() {
+        var provider = new GeneratedRecordCodecProvider();
+        var codec = provider.get(SimpleRecord.class, CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider));
+
+        assertNull(codec.getMetrics());
+        assertTrue(provider.getMetrics().isEmpty());
+    }
+
+    @Test
+    void testMetrics() {
+        var codec = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of(), true)
+                .defineCodecClass(null).newCodec(registry);
+        var metrics = codec.getMetrics();
+        assertEquals(SimpleRecord.class, metrics.getRecordClass());
+        assertEquals(SimpleRecord.class.getName(), metrics.getDescription());
+
+        var outputBuffer = new BasicOutputBuffer();
+        codec.encodeTo(outputBuffer, new SimpleRecord("42", 1));
+        assertEquals(1, metrics.getDocumentsEncoded());
+        assertEquals(outputBuffer.getSize(), metrics.getBytesEncoded());
+
+        var bytes = toBytes(document);
+        assertEquals(new SimpleRecord("42", null), codec.decode(ByteBuffer.wrap(bytes)));
+        assertEquals(1, metrics.getDocumentsDecoded());
+        assertEquals(bytes.length, metrics.getBytesDecoded());
+        assertEquals(1, metrics.getNullsRead());
+        assertEquals(1, metrics.getUnknownFieldsSkipped());
+
+        // the size of documents read from other readers is not known
+        assertEquals(new SimpleRecord("42", null),
+                codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+        assertEquals(2, metrics.getDocumentsDecoded());
+        assertEquals(bytes.length, metrics.getBytesDecoded());
+        assertEquals(2, metrics.getNullsRead());
+        assertEquals(2, metrics.getUnknownFieldsSkipped());
+
+        assertEquals(List.of(new SimpleRecord("42", null), new SimpleRecord("42", null)),
+                codec.decodeAll(ByteBuffer.wrap(concat(bytes, bytes))));
+        assertEquals(4, metrics.getDocumentsDecoded());
+        assertEquals(3L * bytes.length, metrics.getBytesDecoded());
+
+        assertEquals(0, metrics.getDecodeFailures());
+        var invalidBytes = Arrays.copyOf(bytes, bytes.length - 1);
+        assertThrows(BsonSerializationException.class, () -> codec.decode(ByteBuffer.wrap(invalidBytes)));
+        assertThrows(BsonSerializationException.class, () -> codec.decodeAll(ByteBuffer.wrap(invalidBytes)));
+        assertEquals(2, metrics.getDecodeFailures());
+        assertEquals(4, metrics.getDocumentsDecoded());
+
+        assertNull(metrics.getEncodeLatencies());
+        assertNull(metrics.getDecodeLatencies());
+    }
+
+    @Test
+    void testPrewarmingIsNotCounted() {
+        var codec = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of(), true)
+                .defineCodecClass(null).newCodec(registry);
+
+        CodecPrewarmer.warm(codec, 100);
+
+        var metrics = codec.getMetrics();
+        assertEquals(0, metrics.getDocumentsEncoded());
+        assertEquals(0, metrics.getBytesEncoded());
+        assertEquals(0, metrics.getDocumentsDecoded());
+        assertEquals(0, metrics.getBytesDecoded());
+
+        // operations after prewarming are counted
+        codec.encodeTo(new BasicOutputBuffer(), new SimpleRecord("42", 1));
+        assertEquals(1, metrics.getDocumentsEncoded());
+    }
+
+    @Test
+    void testOperationsRunUncountedAreNotCounted() {
+        var codec = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of(), true)
+                .defineCodecClass(null).newCodec(registry);
+        var bytes = toBytes(document);
+        var invalidBytes = Arrays.copyOf(bytes, bytes.length - 1);
+
+        StripedCodecMetrics.runUncounted(() -> {
+            assertEquals(new SimpleRecord("42", null), codec.decode(ByteBuffer.wrap(bytes)));
+            assertEquals(new SimpleRecord("42", null),
+                    codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+            assertEquals(List.of(new SimpleRecord("42", null)), codec.decodeAll(ByteBuffer.wrap(bytes)));
+            assertThrows(BsonSerializationException.class, () -> codec.decode(ByteBuffer.wrap(invalidBytes)));
+        });
+
+        // nulls, unknown fields and failures are not counted within the operations either
+        var metrics = codec.getMetrics();
+        assertEquals(0, metrics.getDocumentsDecoded());
+        assertEquals(0, metrics.getBytesDecoded());
+        assertEquals(0, metrics.getNullsRead());
+        assertEquals(0, metrics.getUnknownFieldsSkipped());
+        assertEquals(0, metrics.getDecodeFailures());
+    }
+
+    @Test
+    void testLatencyHistograms() {
+        GeneratedRecordCodec<SimpleRecord> codec;
+        System.setProperty(CodecMetrics.LATENCY_SAMPLE_INTERVAL_PROPERTY, "1");
+        try {
+            codec = new GeneratedRecordCodecProvider.RecordCodecGenerator<>(SimpleRecord.class, List.of(), true)
+                    .defineCodecClass(null).newCodec(registry);
+        } finally {
+            System.clearProperty(CodecMetrics.LATENCY_SAMPLE_INTERVAL_PROPERTY);
+        }
+
+        var bytes = toBytes(document);
+        for (int i = 0; i < 3; i++) {
+            codec.decode(ByteBuffer.wrap(bytes));
+        }
+        codec.encodeTo(new BasicOutputBuffer(), new SimpleRecord("42", 1));
+
+        assertEquals(3, Arrays.stream(codec.getMetrics().getDecodeLatencies()).sum());
+        assertEquals(1, Arrays.stream(codec.getMetrics().getEncodeLatencies()).sum());
+    }
+
+    private static byte[] toBytes(final BsonDocument document) {
+        var outputBuffer = new BasicOutputBuffer();
+        new BsonDocumentCodec().encode(new BsonBinaryWriter(outputBuffer), document, EncoderContext.builder().build());
+        return outputBuffer.toByteArray();
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        var bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
@@ -17,6 +17,10 @@
 package org.bson.codecs.record.codegen;
 
 import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonBoolean;
 import org.bson.BsonDocument;
 import org.bson.BsonDocumentReader;
@@ -24,22 +28,50 @@ import org.bson.BsonDocumentWriter;
 import org.bson.BsonDouble;
 import org.bson.BsonInt32;
 import org.bson.BsonInt64;
+import org.bson.BsonNull;
 import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonSerializationException;
 import org.bson.BsonString;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonDocumentCodec;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GeneratedRecordCodecProviderTest {
 
@@ -127,6 +159,229 @@ public class GeneratedRecordCodecProviderTest {
                                         new BsonDocument("name", new BsonString("embedded")))));
     }
 
+    @Test
+    void testRecordWithCollections() {
+        var doubles = new LinkedHashMap<String, Double>();
+        doubles.put("pi", 3.14);
+        doubles.put("missing", null);
+        var mapOfRecords = new LinkedHashMap<String, TestRecordEmbedded>();
+        mapOfRecords.put("first", new TestRecordEmbedded("embedded"));
+        mapOfRecords.put("second", null);
+        assertRoundTrip(TestRecordWithCollections.class,
+                new TestRecordWithCollections(Arrays.asList("a", null, "\u00e9"), Set.of(42), doubles,
+                        List.of(List.of('x', 'y'), List.of()), List.of(mapOfRecords)),
+                new BsonDocument("strings", new BsonArray(List.of(new BsonString("a"), new BsonNull(), new BsonString("\u00e9"))))
+                        .append("integers", new BsonArray(List.of(new BsonInt32(42))))
+                        .append("doubles", new BsonDocument("pi", new BsonDouble(3.14)).append("missing", new BsonNull()))
+                        .append("listOfLists", new BsonArray(List.of(
+                                new BsonArray(List.of(new BsonString("x"), new BsonString("y"))),
+                                new BsonArray())))
+                        .append("listOfMapsOfRecords", new BsonArray(List.of(
+                                new BsonDocument("first", new BsonDocument("name", new BsonString("embedded")))
+                                        .append("second", new BsonNull())))));
+    }
+
+    @Test
+    void testRecordWithPrimitiveArrays() {
+        var ints = IntStream.range(0, 25).toArray();
+        var longs = new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE};
+        assertRoundTrip(TestRecordWithPrimitiveArrays.class,
+                new TestRecordWithPrimitiveArrays(ints, longs, new double[0], new byte[] {1, 2, 3}),
+                new BsonDocument("ints", new BsonArray(IntStream.of(ints).mapToObj(BsonInt32::new).toList()))
+                        .append("longs", new BsonArray(LongStream.of(longs).mapToObj(BsonInt64::new).toList()))
+                        .append("doubles", new BsonArray())
+                        .append("bytes", new BsonBinary(new byte[] {1, 2, 3})));
+        assertRoundTrip(TestRecordWithPrimitiveArrays.class,
+                new TestRecordWithPrimitiveArrays(null, null, null, null),
+                new BsonDocument());
+    }
+
+    @Test
+    void testDecodeOfPrimitiveArraysWithConvertibleElements() {
+        // Elements of other numeric types are converted, as by the registry's codecs for the wrapper types
+        GeneratedRecordCodec<TestRecordWithPrimitiveArrays> codec =
+                (GeneratedRecordCodec<TestRecordWithPrimitiveArrays>) registry.get(TestRecordWithPrimitiveArrays.class);
+        var document = new BsonDocument("ints", new BsonArray(List.of(new BsonInt32(1), new BsonInt64(2), new BsonDouble(3.0))))
+                .append("longs", new BsonArray(List.of(new BsonInt32(4))))
+                .append("doubles", new BsonArray(List.of(new BsonInt32(5), new BsonDouble(6.5))))
+                .append("bytes", new BsonBinary(BsonBinarySubType.USER_DEFINED, new byte[] {7}));
+        var expected = new TestRecordWithPrimitiveArrays(new int[] {1, 2, 3}, new long[] {4}, new double[] {5, 6.5}, new byte[] {7});
+
+        assertEquals(expected, codec.decode(ByteBuffer.wrap(toBytes(document))));
+        assertEquals(expected, codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+    }
+
+    @Test
+    void testRecordWithEnums() {
+        assertRoundTrip(TestRecordWithEnums.class,
+                new TestRecordWithEnums(TestRecordWithEnums.Color.GREEN, TestRecordWithEnums.Color.BB),
+                new BsonDocument("color", new BsonString("GREEN")).append("other", new BsonString("BB")));
+        assertRoundTrip(TestRecordWithEnums.class,
+                new TestRecordWithEnums(TestRecordWithEnums.Color.Aa, null),
+                new BsonDocument("color", new BsonString("Aa")));
+    }
+
+    @Test
+    void testDecodeOfUnknownEnumConstant() {
+        // As with EnumCodec, a name that is not a constant of the enum fails in Enum.valueOf
+        GeneratedRecordCodec<TestRecordWithEnums> codec =
+                (GeneratedRecordCodec<TestRecordWithEnums>) registry.get(TestRecordWithEnums.class);
+        var document = new BsonDocument("color", new BsonString("PURPLE"));
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(ByteBuffer.wrap(toBytes(document))));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+    }
+
+    @Test
+    void testRecordWithEnumCodecThatIsNotEnumCodec() {
+        // A codec for the enum from the registry is used in place of the generated code
+        var ordinalCodec = new Codec<TestRecordWithEnums.Color>() {
+            @Override
+            public TestRecordWithEnums.Color decode(final BsonReader reader, final DecoderContext decoderContext) {
+                return TestRecordWithEnums.Color.values()[reader.readInt32()];
+            }
+
+            @Override
+            public void encode(final BsonWriter writer, final TestRecordWithEnums.Color value, final EncoderContext encoderContext) {
+                writer.writeInt32(value.ordinal());
+            }
+
+            @Override
+            public Class<TestRecordWithEnums.Color> getEncoderClass() {
+                return TestRecordWithEnums.Color.class;
+            }
+        };
+        registry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(ordinalCodec), registry);
+
+        assertRoundTrip(TestRecordWithEnums.class,
+                new TestRecordWithEnums(TestRecordWithEnums.Color.BLUE, TestRecordWithEnums.Color.RED),
+                new BsonDocument("color", new BsonInt32(2)).append("other", new BsonInt32(0)));
+    }
+
+    @Test
+    void testMissingComponentCodecIsReportedWhenGettingTheCodec() {
+        // Only the codecs of record components are resolved on first use, so a missing codec is reported by the registry
+        assertThrows(CodecConfigurationException.class, () -> registry.get(TestRecordWithComponentWithoutCodec.class));
+    }
+
+    @Test
+    void testProjection() {
+        var provider = new GeneratedRecordCodecProvider();
+        var codec = provider.getProjection(TestRecordWithCollections.class, Set.of("integers", "listOfLists"), registry);
+        var document = new BsonDocument("strings", new BsonArray(List.of(new BsonString("a"))))
+                .append("integers", new BsonArray(List.of(new BsonInt32(42))))
+                .append("doubles", new BsonDocument("pi", new BsonDouble(3.14)))
+                .append("listOfLists", new BsonArray(List.of(new BsonArray(List.of(new BsonString("x"))))))
+                .append("listOfMapsOfRecords", new BsonArray(List.of(
+                        new BsonDocument("first", new BsonDocument("name", new BsonString("embedded"))))))
+                .append("unknown", new BsonString("ignored"));
+        var expected = new TestRecordWithCollections(null, Set.of(42), null, List.of(List.of('x')), null);
+
+        assertEquals(expected, codec.decode(ByteBuffer.wrap(toBytes(document))));
+        assertEquals(expected, codec.decode(new BsonBinaryReader(ByteBuffer.wrap(toBytes(document))), DecoderContext.builder().build()));
+        assertEquals(expected, codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+        assertSame(codec, provider.getProjection(TestRecordWithCollections.class, Set.of("listOfLists", "integers"), registry));
+    }
+
+    @Test
+    void testProjectionOfPrimitives() {
+        var codec = new GeneratedRecordCodecProvider().getProjection(TestRecordWithPrimitives.class, Set.of("l2", "b2"), registry);
+        var record = new TestRecordWithPrimitives(1, 2, 3, 4, 5.0, true, 6.0, true);
+        var buffer = new BasicOutputBuffer();
+        codec.encodeTo(buffer, record);
+
+        assertEquals(new TestRecordWithPrimitives(0, 0, 3, 0, 0.0, false, 0.0, true), codec.decode(ByteBuffer.wrap(buffer.toByteArray())));
+    }
+
+    @Test
+    void testProjectionOfUnknownComponent() {
+        assertThrows(CodecConfigurationException.class, () ->
+                new GeneratedRecordCodecProvider().getProjection(TestRecordWithPrimitives.class, Set.of("missing"), registry));
+    }
+
+    @Test
+    void testExtractor() throws Throwable {
+        GeneratedRecordCodec<TestRecordWithPrimitives> codec =
+                (GeneratedRecordCodec<TestRecordWithPrimitives>) registry.get(TestRecordWithPrimitives.class);
+        var buffer = new BasicOutputBuffer();
+        codec.encodeTo(buffer, new TestRecordWithPrimitives(1, 2, 3, 4, 5.0, true, 6.0, false));
+        var byteBuffer = ByteBuffer.wrap(buffer.toByteArray());
+
+        assertEquals(4, (int) codec.getExtractor("i2").invokeExact(byteBuffer));
+        assertEquals(3L, (long) codec.getExtractor("l2").invokeExact(byteBuffer));
+        assertTrue((boolean) codec.getExtractor("b1").invokeExact(byteBuffer));
+        assertEquals(0, byteBuffer.position());
+
+        // A value of another numeric type is converted, and a missing element has the default value
+        var document = new BsonDocument("i1", new BsonInt64(7)).append("d1", new BsonInt32(8));
+        var documentBuffer = ByteBuffer.wrap(toBytes(document));
+        assertEquals(7, (int) codec.getExtractor("i1").invokeExact(documentBuffer));
+        assertEquals(8.0, (double) codec.getExtractor("d1").invokeExact(documentBuffer));
+        assertEquals(0L, (long) codec.getExtractor("l1").invokeExact(documentBuffer));
+
+        assertThrows(IllegalArgumentException.class, () -> codec.getExtractor("missing"));
+    }
+
+    @Test
+    void testExtractorOfComponentWithCodec() throws Throwable {
+        GeneratedRecordCodec<TestRecordWithCollections> codec =
+                (GeneratedRecordCodec<TestRecordWithCollections>) registry.get(TestRecordWithCollections.class);
+        var document = new BsonDocument("strings", new BsonArray(List.of(new BsonString("a"))))
+                .append("integers", new BsonArray(List.of(new BsonInt32(42))))
+                .append("listOfMapsOfRecords", new BsonArray(List.of(
+                        new BsonDocument("first", new BsonDocument("name", new BsonString("embedded"))))));
+        var byteBuffer = ByteBuffer.wrap(toBytes(document));
+
+        assertEquals(List.of(Map.of("first", new TestRecordEmbedded("embedded"))),
+                (List<?>) codec.getExtractor("listOfMapsOfRecords").invokeExact(byteBuffer));
+        assertNull((Map<?, ?>) codec.getExtractor("doubles").invokeExact(byteBuffer));
+    }
+
+    @Test
+    void testDecodeAll() {
+        GeneratedRecordCodec<TestRecordWithCollections> codec =
+                (GeneratedRecordCodec<TestRecordWithCollections>) registry.get(TestRecordWithCollections.class);
+        var records = List.of(
+                new TestRecordWithCollections(List.of("a"), Set.of(1), Map.of("pi", 3.14), List.of(), List.of()),
+                new TestRecordWithCollections(null, null, null, null, null),
+                new TestRecordWithCollections(List.of("b", "c"), Set.of(), Map.of(), List.of(List.of('x')),
+                        List.of(Map.of("first", new TestRecordEmbedded("embedded")))));
+        var buffer = new BasicOutputBuffer();
+        for (var record : records) {
+            codec.encodeTo(buffer, record);
+        }
+        var bytes = buffer.toByteArray();
+
+        var byteBuffer = ByteBuffer.wrap(bytes);
+        assertEquals(records, codec.decodeAll(byteBuffer));
+        assertEquals(bytes.length, byteBuffer.position());
+
+        var decoded = new ArrayList<TestRecordWithCollections>();
+        codec.decodeAll(ByteBuffer.wrap(bytes), decoded::add);
+        assertEquals(records, decoded);
+    }
+
+    @Test
+    void testDecodeAllOfInvalidDocument() {
+        GeneratedRecordCodec<TestRecordWithPrimitives> codec =
+                (GeneratedRecordCodec<TestRecordWithPrimitives>) registry.get(TestRecordWithPrimitives.class);
+        var record = new TestRecordWithPrimitives(1, 2, 3, 4, 5.0, true, 6.0, false);
+        var buffer = new BasicOutputBuffer();
+        codec.encodeTo(buffer, record);
+        var documentSize = buffer.getPosition();
+        // a document whose size is one byte more than its elements and terminating null byte
+        buffer.writeInt32(6);
+        buffer.writeByte(0);
+        buffer.writeByte(0);
+
+        var byteBuffer = ByteBuffer.wrap(buffer.toByteArray());
+        var decoded = new ArrayList<TestRecordWithPrimitives>();
+        assertThrows(BsonSerializationException.class, () -> codec.decodeAll(byteBuffer, decoded::add));
+        assertEquals(List.of(record), decoded);
+        assertEquals(documentSize, byteBuffer.position());
+    }
+
     @Test
     void testRecordWithMapOfListOfRecords() {
         ObjectId id = new ObjectId();
@@ -196,6 +451,175 @@ public class GeneratedRecordCodecProviderTest {
                                                         new BsonDocument("name", new BsonString("embedded"))))))))));
     }
 
+    @Test
+    void testPackagePrivateRecord() {
+        assertRoundTrip(
+                TestRecordPackagePrivate.class,
+                new TestRecordPackagePrivate("42", 1),
+                new BsonDocument("name", new BsonString("42")).append("value", new BsonInt32(1)));
+    }
+
+    @Test
+    void testCodecIsHiddenClassInRecordPackage() {
+        var codecClass = registry.get(SimpleRecord.class).getClass();
+
+        assertTrue(codecClass.isHidden());
+        assertEquals(SimpleRecord.class.getPackageName(), codecClass.getPackageName());
+        assertSame(SimpleRecord.class.getClassLoader(), codecClass.getClassLoader());
+    }
+
+    @Test
+    void testCodecIsCachedPerRegistry() {
+        var provider = new GeneratedRecordCodecProvider();
+        var otherRegistry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+
+        var codec = provider.get(SimpleRecord.class, registry);
+        var otherCodec = provider.get(SimpleRecord.class, otherRegistry);
+
+        assertSame(codec, provider.get(SimpleRecord.class, registry));
+        assertNotSame(codec, otherCodec);
+        assertSame(codec.getClass(), otherCodec.getClass());
+        assertSame(codec.getClass(), new GeneratedRecordCodecProvider().get(SimpleRecord.class, registry).getClass());
+    }
+
+    @Test
+    void testProviderDoesNotKeepRegistriesReachable() throws InterruptedException {
+        var provider = new GeneratedRecordCodecProvider();
+        var otherRegistry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+        provider.get(SimpleRecord.class, otherRegistry);
+        var registryReference = new WeakReference<>(otherRegistry);
+
+        otherRegistry = null;
+        for (int i = 0; i < 50 && registryReference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(registryReference.get());
+    }
+
+    @Test
+    void testPrewarm() {
+        var provider = new GeneratedRecordCodecProvider();
+        var otherRegistry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+        List<Class<? extends Record>> recordClasses = List.of(SimpleRecord.class, TestRecordWithAllPrimitives.class,
+                TestRecordWithCollections.class, TestRecordWithEnums.class, TestRecordWithPrimitiveArrays.class,
+                TestRecordWithMapOfListOfRecords.class);
+
+        provider.prewarm(recordClasses, otherRegistry);
+
+        var codec = provider.get(SimpleRecord.class, otherRegistry);
+        var document = new BsonDocument("id", new BsonString("42")).append("val", new BsonInt32(1));
+        assertEquals(new SimpleRecord("42", 1), codec.decode(ByteBuffer.wrap(toBytes(document))));
+        var outputBuffer = new BasicOutputBuffer();
+        codec.encodeTo(outputBuffer, new SimpleRecord("42", 1));
+        assertArrayEquals(toBytes(document), outputBuffer.toByteArray());
+    }
+
+    @Test
+    void testPrewarmInPool() {
+        var provider = new GeneratedRecordCodecProvider();
+        var otherRegistry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, provider);
+        var pool = new ForkJoinPool(2);
+        try {
+            provider.prewarm(List.of(SimpleRecord.class, TestRecordWithEnums.class), otherRegistry, pool, 10);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertSame(otherRegistry.get(SimpleRecord.class), provider.get(SimpleRecord.class, otherRegistry));
+        assertThrows(IllegalArgumentException.class, () -> provider.prewarm(List.of(SimpleRecord.class), otherRegistry,
+                ForkJoinPool.commonPool(), -1));
+    }
+
+    @Test
+    void testConcurrentGetGeneratesSingleCodecClass() throws Exception {
+        var threads = 8;
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var start = new CountDownLatch(1);
+            var futures = new ArrayList<Future<Class<?>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    var otherRegistry = CodecRegistries.fromProviders(DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider());
+                    return otherRegistry.get(TestRecordWithAllPrimitives.class).getClass();
+                }));
+            }
+            start.countDown();
+
+            var codecClasses = new HashSet<Class<?>>();
+            for (var future : futures) {
+                codecClasses.add(future.get());
+            }
+            assertEquals(1, codecClasses.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDecodeFromBufferChecksDocumentSize() {
+        var codec = (GeneratedRecordCodec<SimpleRecord>) registry.get(SimpleRecord.class);
+        var bytes = toBytes(new BsonDocument("id", new BsonString("42")).append("val", new BsonInt32(1)));
+        var buffer = ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) 0).flip();
+        // claim one more byte than the elements take up
+        buffer.put(0, (byte) (bytes[0] + 1));
+
+        assertThrows(BsonSerializationException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void testParameterizedRecordWithNestedRecordCodecThatIsNotGenerated() {
+        // The registry provides a codec for the nested record that the generated codec cannot call directly
+        var generatedRecordCodecProvider = new GeneratedRecordCodecProvider();
+        var delegatingCodecProvider = new CodecProvider() {
+            @Override
+            public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+                return get(clazz, List.of(), registry);
+            }
+
+            @Override
+            public <T> Codec<T> get(Class<T> clazz, List<Type> typeArguments, CodecRegistry registry) {
+                if (clazz != TestRecordParameterized.class) {
+                    return null;
+                }
+                Codec<T> codec = generatedRecordCodecProvider.get(clazz, typeArguments, registry);
+                return new Codec<>() {
+                    @Override
+                    public T decode(BsonReader reader, DecoderContext decoderContext) {
+                        return codec.decode(reader, decoderContext);
+                    }
+
+                    @Override
+                    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+                        codec.encode(writer, value, encoderContext);
+                    }
+
+                    @Override
+                    public Class<T> getEncoderClass() {
+                        return codec.getEncoderClass();
+                    }
+                };
+            }
+        };
+        registry = CodecRegistries.fromProviders(delegatingCodecProvider, DEFAULT_CODEC_REGISTRY, generatedRecordCodecProvider);
+
+        testParameterizedRecord();
+    }
+
+    @Test
+    void testSizeOfRecordWithMultiByteStrings() {
+        GeneratedRecordCodec<SimpleRecord> codec = (GeneratedRecordCodec<SimpleRecord>) registry.get(SimpleRecord.class);
+        // two, three and four byte characters, and an unpaired surrogate, which is encoded as three bytes
+        for (var id : List.of("\u00e9t\u00e9", "\u4e2d\u6587", "\ud83d\ude00", "\ud83d", "a\ude00b")) {
+            var record = new SimpleRecord(id, 1);
+            BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+            codec.encode(new BsonBinaryWriter(outputBuffer), record, EncoderContext.builder().build());
+            assertEquals(outputBuffer.getSize(), codec.sizeOf(record), id);
+        }
+    }
+
     private <T> void assertRoundTrip(Class<T> recordClass, T record, BsonDocument expectedDocument) {
         Codec<T> codec = registry.get(recordClass);
 
@@ -210,6 +634,32 @@ public class GeneratedRecordCodecProviderTest {
         BsonDocumentReader reader = new BsonDocumentReader(expectedDocument);
         T decodedRecord = codec.decode(reader, DecoderContext.builder().build());
         assertEquals(record, decodedRecord);
+
+        byte[] bytes = toBytes(expectedDocument);
+        assertEquals(record, codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+
+        GeneratedRecordCodec<T> generatedCodec = (GeneratedRecordCodec<T>) codec;
+        BasicOutputBuffer expectedBuffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(expectedBuffer), record, EncoderContext.builder().build());
+        BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+        outputBuffer.writeByte(1);
+        generatedCodec.encodeTo(outputBuffer, record);
+        assertArrayEquals(expectedBuffer.toByteArray(), Arrays.copyOfRange(outputBuffer.toByteArray(), 1, outputBuffer.getSize()));
+        assertEquals(expectedBuffer.getSize(), generatedCodec.sizeOf(record));
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2).put((byte) 1).put(bytes).put((byte) 2).position(1);
+        assertEquals(record, generatedCodec.decode(buffer));
+        assertEquals(bytes.length + 1, buffer.position());
+
+        byte[] offsetBytes = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, offsetBytes, 3, bytes.length);
+        assertEquals(record, generatedCodec.decode(offsetBytes, 3));
+    }
+
+    private static byte[] toBytes(BsonDocument document) {
+        BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+        new BsonDocumentCodec().encode(new BsonBinaryWriter(outputBuffer), document, EncoderContext.builder().build());
+        return outputBuffer.toByteArray();
     }
 
 }
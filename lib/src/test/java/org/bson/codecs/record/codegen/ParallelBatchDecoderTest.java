@@ -0,0 +1,86 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.bson.BsonSerializationException;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.bson.conversions.Bson.DEFAULT_CODEC_REGISTRY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelBatchDecoderTest {
+
+    @SuppressWarnings("unchecked")
+    private final GeneratedRecordCodec<SimpleRecord> codec = (GeneratedRecordCodec<SimpleRecord>) CodecRegistries.fromProviders(
+            DEFAULT_CODEC_REGISTRY, new GeneratedRecordCodecProvider()).get(SimpleRecord.class);
+
+    @Test
+    void testDecodeAll() {
+        var records = IntStream.range(0, 1000)
+                .mapToObj(i -> new SimpleRecord(i % 7 == 0 ? null : "id" + i, i))
+                .toArray(SimpleRecord[]::new);
+        var byteBuffer = ByteBuffer.wrap(encode(records));
+
+        var pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(records, ParallelBatchDecoder.decodeAll(codec, byteBuffer, SimpleRecord[]::new, pool));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(byteBuffer.limit(), byteBuffer.position());
+    }
+
+    @Test
+    void testDecodeAllFromPosition() {
+        var records = new SimpleRecord[] {new SimpleRecord("a", 1), new SimpleRecord("b", 2)};
+        var bytes = encode(records);
+        var byteBuffer = ByteBuffer.allocate(bytes.length + 3).position(3).put(bytes).position(3);
+
+        assertArrayEquals(records, ParallelBatchDecoder.decodeAll(codec, byteBuffer, SimpleRecord[]::new));
+        assertEquals(0, ParallelBatchDecoder.decodeAll(codec, byteBuffer, SimpleRecord[]::new).length);
+    }
+
+    @Test
+    void testDecodeAllOfInvalidLength() {
+        var bytes = encode(new SimpleRecord("a", 1));
+
+        // truncated length
+        assertThrows(BsonSerializationException.class, () ->
+                ParallelBatchDecoder.decodeAll(codec, ByteBuffer.wrap(bytes, 0, 3), SimpleRecord[]::new));
+        // length past the end of the buffer
+        var byteBuffer = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+        assertThrows(BsonSerializationException.class, () ->
+                ParallelBatchDecoder.decodeAll(codec, byteBuffer, SimpleRecord[]::new));
+        assertEquals(0, byteBuffer.position());
+    }
+
+    private byte[] encode(final SimpleRecord... records) {
+        var buffer = new BasicOutputBuffer();
+        for (var record : records) {
+            codec.encodeTo(buffer, record);
+        }
+        return buffer.toByteArray();
+    }
+}
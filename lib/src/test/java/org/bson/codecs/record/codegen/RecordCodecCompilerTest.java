@@ -0,0 +1,80 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordCodecCompilerTest {
+
+    @TempDir
+    Path outputDirectory;
+
+    @Test
+    void testCompile() throws IOException {
+        var result = RecordCodecCompiler.compile(
+                List.of(SimpleRecord.class.getName(), TestRecordParameterized.class.getName()),
+                getClass().getClassLoader(), outputDirectory);
+
+        // generic records are left to runtime generation
+        assertEquals(List.of(SimpleRecord.class.getName()), result.compiled());
+        assertEquals(List.of(TestRecordParameterized.class.getName()), result.skippedGenericRecords());
+        assertEquals(List.of(), result.skippedPrivateRecords());
+        assertTrue(Files.isRegularFile(outputDirectory.resolve("org/bson/codecs/record/codegen/SimpleRecord$$Codec.class")));
+        try (var inputStream = Files.newInputStream(outputDirectory.resolve(PrecompiledCodecs.INDEX_RESOURCE))) {
+            assertEquals(List.of(SimpleRecord.class.getName()), PrecompiledCodecs.readNames(inputStream));
+        }
+    }
+
+    @Test
+    void testCompileSkipsPrivateRecords() throws IOException {
+        var result = RecordCodecCompiler.compile(
+                List.of(SimpleRecord.class.getName(), PrivateRecord.class.getName()),
+                getClass().getClassLoader(), outputDirectory);
+
+        // the private canonical constructor is only accessible to a hidden codec class generated at runtime
+        assertEquals(List.of(SimpleRecord.class.getName()), result.compiled());
+        assertEquals(List.of(PrivateRecord.class.getName()), result.skippedPrivateRecords());
+        assertFalse(Files.exists(outputDirectory.resolve(
+                "org/bson/codecs/record/codegen/RecordCodecCompilerTest$PrivateRecord$$Codec.class")));
+        try (var inputStream = Files.newInputStream(outputDirectory.resolve(PrecompiledCodecs.INDEX_RESOURCE))) {
+            assertEquals(List.of(SimpleRecord.class.getName()), PrecompiledCodecs.readNames(inputStream));
+        }
+    }
+
+    @Test
+    void testCompileRejectsNonRecords() {
+        assertThrows(IllegalArgumentException.class, () ->
+                RecordCodecCompiler.compile(List.of(String.class.getName()), getClass().getClassLoader(), outputDirectory));
+        assertThrows(IllegalArgumentException.class, () ->
+                RecordCodecCompiler.compile(List.of("org.bson.codecs.record.codegen.Missing"), getClass().getClassLoader(),
+                        outputDirectory));
+    }
+
+    private record PrivateRecord(String name) {
+    }
+}
@@ -17,21 +17,28 @@
 package org.bson.codecs.record.codegen;
 
 import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBoolean;
 import org.bson.BsonDocument;
 import org.bson.BsonDocumentReader;
 import org.bson.BsonDocumentWriter;
 import org.bson.BsonDouble;
 import org.bson.BsonInt32;
+import org.bson.BsonInt64;
 import org.bson.BsonInvalidOperationException;
 import org.bson.BsonNull;
 import org.bson.BsonObjectId;
 import org.bson.BsonString;
+import org.bson.BsonSymbol;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecConfigurationException;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.record.codegen.samples.TestRecordEmbedded;
+import org.bson.codecs.record.codegen.samples.TestRecordWithBoxedFields;
 import org.bson.codecs.record.codegen.samples.TestRecordParameterized;
 import org.bson.codecs.record.codegen.samples.TestRecordWithIllegalBsonCreatorOnConstructor;
 import org.bson.codecs.record.codegen.samples.TestRecordWithIllegalBsonCreatorOnMethod;
@@ -54,6 +61,7 @@ import org.bson.codecs.record.codegen.samples.TestRecordWithNestedParameterizedR
 import org.bson.codecs.record.codegen.samples.TestRecordWithNullableField;
 import org.bson.codecs.record.codegen.samples.TestRecordWithParameterizedRecord;
 import org.bson.codecs.record.codegen.samples.TestRecordWithPojoAnnotations;
+import org.bson.codecs.record.codegen.samples.TestRecordWithUnsupportedBsonRepresentation;
 import org.bson.codecs.record.codegen.samples.TestSelfReferentialHolderRecord;
 import org.bson.codecs.record.codegen.samples.TestSelfReferentialRecord;
 import org.bson.conversions.Bson;
@@ -336,6 +344,151 @@ public class RecordCodecTest {
                 codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
     }
 
+    @Test
+    public void testRecordWithBoxedFields() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithBoxedFields.class);
+        var testRecord = new TestRecordWithBoxedFields(42, 42L, 4.2, true, 'x');
+
+        var document = new BsonDocument();
+        var writer = new BsonDocumentWriter(document);
+
+        // when
+        codec.encode(writer, testRecord, EncoderContext.builder().build());
+
+        // then
+        assertEquals(
+                new BsonDocument("count", new BsonInt32(42))
+                        .append("total", new BsonInt64(42L))
+                        .append("ratio", new BsonDouble(4.2))
+                        .append("flag", BsonBoolean.TRUE)
+                        .append("initial", new BsonString("x")),
+                document);
+
+        // when
+        var decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
+    @Test
+    public void testRecordWithNullBoxedFields() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithBoxedFields.class);
+        var testRecord = new TestRecordWithBoxedFields(null, null, null, null, null);
+
+        var document = new BsonDocument();
+        var writer = new BsonDocumentWriter(document);
+
+        // when
+        codec.encode(writer, testRecord, EncoderContext.builder().build());
+
+        // then
+        assertEquals(new BsonDocument(), document);
+
+        // when
+        var decoded = codec.decode(new BsonDocumentReader(new BsonDocument("count", new BsonNull())
+                .append("total", new BsonInt32(42))), DecoderContext.builder().build());
+
+        // then
+        assertEquals(new TestRecordWithBoxedFields(null, 42L, null, null, null), decoded);
+    }
+
+    @Test
+    public void testRecordWithFieldsOutOfDeclarationOrder() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithBoxedFields.class);
+        var testRecord = new TestRecordWithBoxedFields(42, 42L, 4.2, true, 'x');
+
+        var document = new BsonDocument("flag", BsonBoolean.TRUE)
+                .append("count", new BsonInt32(42))
+                .append("extra", new BsonString("ignored"))
+                .append("total", new BsonInt64(42L))
+                .append("initial", new BsonString("x"))
+                .append("ratio", new BsonDouble(4.2));
+
+        // when
+        var decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
+    @Test
+    public void testBinaryDecodeOfRecordWithBoxedFields() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithBoxedFields.class);
+        var testRecord = new TestRecordWithBoxedFields(42, 42L, 4.2, true, 'x');
+
+        var document = new BsonDocument("count", new BsonInt32(42))
+                .append("total", new BsonInt64(42L))
+                .append("ratio", new BsonDouble(4.2))
+                .append("flag", BsonBoolean.TRUE)
+                .append("initial", new BsonString("x"));
+
+        // when
+        var decoded = codec.decode(toBinaryReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
+    @Test
+    public void testBinaryDecodeOfFieldsNotReadDirectly() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithBoxedFields.class);
+        var testRecord = new TestRecordWithBoxedFields(42, null, 4.0, null, 'x');
+
+        // out of order, with an unknown field, a null, and values that need converting
+        var document = new BsonDocument("ratio", new BsonInt32(4))
+                .append("extra", new BsonDocument("name", new BsonString("ignored")))
+                .append("count", new BsonInt64(42L))
+                .append("flag", new BsonNull())
+                .append("initial", new BsonString("x"));
+
+        // when
+        var decoded = codec.decode(toBinaryReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
+    @Test
+    public void testBinaryDecodeOfNestedRecords() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithListOfRecords.class);
+        var identifier = new ObjectId();
+        var testRecord = new TestRecordWithListOfRecords(identifier, List.of(new TestRecordEmbedded("embedded")));
+
+        var document = new BsonDocument("_id", new BsonObjectId(identifier))
+                .append("nestedRecords", new BsonArray(List.of(new BsonDocument("name", new BsonString("embedded")))));
+
+        // when
+        var decoded = codec.decode(toBinaryReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
+    @Test
+    public void testStringDecodedFromSymbol() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+        var codec = registry.get(TestRecordWithNullableField.class);
+        var identifier = new ObjectId();
+        var testRecord = new TestRecordWithNullableField(identifier, "Felix", 42);
+
+        var document = new BsonDocument("_id", new BsonObjectId(identifier))
+                .append("name", new BsonSymbol("Felix"))
+                .append("age", new BsonInt32(42));
+
+        // when
+        var decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+
+        // then
+        assertEquals(testRecord, decoded);
+    }
+
     @Test
     public void testRecordWithExtraData() {
         var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
@@ -404,6 +557,14 @@ public class RecordCodecTest {
                 registry.get(TestRecordWithIllegalBsonRepresentationOnAccessor.class));
     }
 
+    @Test
+    public void testExceptionsForUnsupportedRepresentation() {
+        var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
+
+        assertThrows(CodecConfigurationException.class, () ->
+                registry.get(TestRecordWithUnsupportedBsonRepresentation.class));
+    }
+
     @Test
     public void testExceptionsForUnsupportedAnnotations() {
         var registry = fromProviders(new GeneratedRecordCodecProvider(), Bson.DEFAULT_CODEC_REGISTRY);
@@ -425,4 +586,8 @@ public class RecordCodecTest {
         assertThrows(CodecConfigurationException.class, () ->
                 registry.get(TestRecordWithIllegalBsonExtraElementsOnAccessor.class));
     }
+
+    private static BsonBinaryReader toBinaryReader(BsonDocument document) {
+        return new BsonBinaryReader(new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer().asNIO());
+    }
 }
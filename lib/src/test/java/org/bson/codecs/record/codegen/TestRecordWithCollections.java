@@ -0,0 +1,25 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public record TestRecordWithCollections(List<String> strings, Set<Integer> integers, Map<String, Double> doubles,
+                                        List<List<Character>> listOfLists, List<Map<String, TestRecordEmbedded>> listOfMapsOfRecords) {
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+public record TestRecordWithPrimitiveArrays(int[] ints, long[] longs, double[] doubles, byte[] bytes) {
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof TestRecordWithPrimitiveArrays that
+                && Arrays.equals(ints, that.ints)
+                && Arrays.equals(longs, that.longs)
+                && Arrays.equals(doubles, that.doubles)
+                && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(ints), Arrays.hashCode(longs), Arrays.hashCode(doubles), Arrays.hashCode(bytes));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonReader;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.IntegerCodec;
+import org.bson.codecs.StringCodec;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CodecCallSiteTest {
+
+    @Test
+    public void testCallsTheCodecOfEveryClass() throws Throwable {
+        var callSite = CodecCallSite.bootstrap(MethodHandles.lookup(), "decode",
+                MethodType.methodType(Object.class, Codec.class, BsonReader.class, DecoderContext.class));
+        var invoker = callSite.dynamicInvoker();
+
+        // The first codec's class is bound to the call site, and codecs of other classes are called through the interface
+        assertEquals(42, invoker.invoke(new IntegerCodec(), toReader(new BsonInt32(42)), DecoderContext.builder().build()));
+        assertEquals(43, invoker.invoke(new IntegerCodec(), toReader(new BsonInt32(43)), DecoderContext.builder().build()));
+        assertEquals("Forty-two", invoker.invoke(new StringCodec(), toReader(new BsonString("Forty-two")),
+                DecoderContext.builder().build()));
+    }
+
+    private static BsonReader toReader(final BsonValue value) {
+        var reader = new BsonDocumentReader(new BsonDocument("value", value));
+        reader.readStartDocument();
+        reader.readName();
+        return reader;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.internal;
+
+import org.bson.ByteBufNIO;
+import org.bson.io.ByteBufferBsonInput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class FieldNameMatcherTest {
+
+    private final FieldNameMatcher matcher = new FieldNameMatcher("_id", "name", "names", "nom", "\u00e9t\u00e9");
+
+    @Test
+    public void testExpectedName() {
+        var input = toInput("_id", "name", "names", "nom", "\u00e9t\u00e9");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, matcher.readName(input, i));
+        }
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void testUnexpectedName() {
+        var input = toInput("names", "name", "nom", "\u00e9t\u00e9", "_id");
+
+        assertEquals(2, matcher.readName(input, 1));
+        assertEquals(1, matcher.readName(input, 2));
+        assertEquals(3, matcher.readName(input, 5));
+        assertEquals(4, matcher.readName(input, -1));
+        assertEquals(0, matcher.readName(input, 3));
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void testUnknownName() {
+        var input = toInput("nam", "namesake", "other", "", "_id");
+
+        assertEquals(-1, matcher.readName(input, 1));
+        assertEquals(-1, matcher.readName(input, 2));
+        assertEquals(-1, matcher.readName(input, 0));
+        assertEquals(-1, matcher.readName(input, 0));
+        assertEquals(0, matcher.readName(input, 0));
+        assertFalse(input.hasRemaining());
+    }
+
+    private static ByteBufferBsonInput toInput(String... names) {
+        var bytes = new ByteArrayOutputStream();
+        for (var name : names) {
+            bytes.writeBytes(name.getBytes(UTF_8));
+            bytes.write(0);
+        }
+        return new ByteBufferBsonInput(new ByteBufNIO(ByteBuffer.wrap(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2008-present MongoDB, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bson.codecs.record.codegen.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.lang.String.format;
+
+/**
+ * Lists the records annotated with {@code org.bson.codecs.record.codegen.GenerateRecordCodec} in a resource in the class
+ * output, so that their codecs can be generated once the records are compiled.
+ *
+ * <p>The codec generator works on loaded classes rather than on source, so it cannot run during annotation processing.
+ * The Gradle plugin passes the resource written here to {@code org.bson.codecs.record.codegen.RecordCodecCompiler}
+ * after compilation.</p>
+ */
+@SupportedAnnotationTypes(GenerateRecordCodecProcessor.ANNOTATION_NAME)
+public class GenerateRecordCodecProcessor extends AbstractProcessor {
+    static final String ANNOTATION_NAME = "org.bson.codecs.record.codegen.GenerateRecordCodec";
+
+    // Must match PrecompiledCodecs.RECORDS_RESOURCE in the library, which this module does not depend on
+    static final String RECORDS_RESOURCE = "META-INF/bson-record-codegen/records";
+
+    private final Set<String> recordClassNames = new TreeSet<>();
+    private final Set<Element> originatingElements = new TreeSet<>((first, second) ->
+            first.toString().compareTo(second.toString()));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (var annotation : annotations) {
+            for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.RECORD) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            format("@%s is only supported on records", annotation.getSimpleName()), element);
+                    continue;
+                }
+                var typeElement = (TypeElement) element;
+                if (!typeElement.getTypeParameters().isEmpty()) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            format("Codecs for generic record %s depend on its type arguments, so they are generated at runtime",
+                                    typeElement.getQualifiedName()), element);
+                    continue;
+                }
+                if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            format("The canonical constructor of private record %s is not accessible to a precompiled codec, so its "
+                                    + "codec is generated at runtime", typeElement.getQualifiedName()), element);
+                    continue;
+                }
+                recordClassNames.add(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+                originatingElements.add(element);
+            }
+        }
+        if (roundEnv.processingOver() && !recordClassNames.isEmpty()) {
+            writeRecordsResource();
+        }
+        return false;
+    }
+
+    private void writeRecordsResource() {
+        try {
+            var resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RECORDS_RESOURCE,
+                    originatingElements.toArray(new Element[0]));
+            try (Writer writer = resource.openWriter()) {
+                for (var recordClassName : recordClassNames) {
+                    writer.write(recordClassName);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    format("Unable to write %s: %s", RECORDS_RESOURCE, e.getMessage()));
+        }
+    }
+}
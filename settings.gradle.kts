@@ -13,4 +13,6 @@ plugins {
 
 rootProject.name = "bson-record-codegen"
 include("lib")
+include("processor")
+include("gradle-plugin")
 include("benchmarks")